@@ -1,7 +1,7 @@
 package painpoint.action;
 
 import com.intellij.psi.PsiFile;
-import com.intellij.psi.PsiJavaFile;
+import painpoint.component.ProjectViewManager;
 import painpoint.decoration.PainPointPresentation;
 import painpoint.dialog.PainPointPresentationFactory;
 import painpoint.dialog.PluginDialog;
@@ -29,13 +29,6 @@ import org.jetbrains.annotations.Nullable;
  */
 public class EditorMenuItem extends AnAction {
 
-    private PainPointDomain mPainPointDomain;
-
-    public EditorMenuItem() {
-        super();
-        mPainPointDomain = new PainPointDomain();
-    }
-
     @Override
     public void actionPerformed(AnActionEvent actionEvent) {
 
@@ -45,12 +38,14 @@ public class EditorMenuItem extends AnAction {
         // get the currently chosen file.
         VirtualFile virtualFile = DataKeys.VIRTUAL_FILE.getData(actionEvent.getDataContext());
 
+        // any file, ex. Kotlin, XML or Gradle, not only Java.
         PsiFile psiFile = actionEvent.getData(LangDataKeys.PSI_FILE);
-        if(psiFile instanceof PsiJavaFile) {
-            PsiJavaFile psiJavaFile = (PsiJavaFile) psiFile;
-            PainPointPresentation painPointPresentation = PainPointPresentationFactory.creatPresentation(project, virtualFile, psiJavaFile);
+        if(psiFile != null && virtualFile != null) {
+            PainPointPresentation painPointPresentation = PainPointPresentationFactory.creatPresentation(project, virtualFile, psiFile);
 
-            PluginDialog pluginDialog = new PluginDialog(painPointPresentation, mPainPointDomain, project);
+            // the project's handle on the shared store, the action doesn't keep its own.
+            PainPointDomain painPointDomain = ProjectViewManager.getInstance(project).getPainPointDomain();
+            PluginDialog pluginDialog = new PluginDialog(painPointPresentation, painPointDomain, project);
             pluginDialog.setSize(300, 150);
         }
     }
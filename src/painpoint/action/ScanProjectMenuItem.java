@@ -0,0 +1,26 @@
+package painpoint.action;
+
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import painpoint.hotspot.HotspotScan;
+
+/**
+ * Ranks every file of the project by its pain points, not dumb aware so it waits for the marker index.
+ */
+public class ScanProjectMenuItem extends AnAction {
+
+    @Override
+    public void actionPerformed(AnActionEvent actionEvent) {
+        Project project = actionEvent.getProject();
+        if (project != null) {
+            ProgressManager.getInstance().run(new HotspotScan(project));
+        }
+    }
+
+    @Override
+    public void update(AnActionEvent actionEvent) {
+        actionEvent.getPresentation().setEnabled(actionEvent.getProject() != null);
+    }
+}
@@ -0,0 +1,187 @@
+package painpoint.component;
+
+import com.intellij.openapi.components.AbstractProjectComponent;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.util.messages.MessageBusConnection;
+import org.jetbrains.annotations.NotNull;
+import painpoint.git.GitConfigReader;
+import painpoint.git.GitIdentityNotifier;
+import painpoint.git.GitRunner;
+import painpoint.pairing.PairConfig;
+import painpoint.pairing.PairConfigNotifier;
+import painpoint.pairing.PairController;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Resolves the git identity votes are made under, the pair display name or else git's user.name, once per project.
+ * The identity is kept until .pairs is reloaded, .git/config or the global git config change, or the pair is toggled,
+ * so decorating a node doesn't read .pairs or start git.
+ */
+public class GitIdentityManager extends AbstractProjectComponent {
+
+    // the global config is outside the project, so VFS events aren't reliable for it, poll it at most this often.
+    private static final long GLOBAL_CONFIG_CHECK_INTERVAL_MILLIS = 2000;
+
+    private final List<File> mGlobalConfigFiles = GitConfigReader.getGlobalConfigFiles();
+    private final long[] mGlobalConfigStamps = new long[mGlobalConfigFiles.size()];
+    private volatile long mLastGlobalConfigCheckMillis;
+    private MessageBusConnection mConnection;
+
+    private volatile boolean mResolved;
+    private volatile String mDisplayName;
+    private volatile PairController mPairController;
+
+    public GitIdentityManager(Project project) {
+        super(project);
+        readGlobalConfigStamps();
+    }
+
+    public static GitIdentityManager getInstance(Project project) {
+        return project.getComponent(GitIdentityManager.class);
+    }
+
+    @Override
+    public void initComponent() {
+        super.initComponent();
+        mConnection = myProject.getMessageBus().connect();
+        mConnection.subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener.Adapter() {
+            @Override
+            public void after(@NotNull List<? extends VFileEvent> events) {
+                for (VFileEvent event : events) {
+                    if (isIdentityFile(event.getPath())) {
+                        invalidate();
+                        return;
+                    }
+                }
+            }
+        });
+        mConnection.subscribe(PairConfigNotifier.PAIR_CONFIG_TOPIC, (project, pairConfig) -> invalidate());
+    }
+
+    @Override
+    public void disposeComponent() {
+        if (mConnection != null) {
+            mConnection.disconnect();
+        }
+        super.disposeComponent();
+    }
+
+    /**
+     * The name votes are made under, the pair's display name or git's user.name when nobody is paired.
+     *
+     * @return cached display name, may be null if git has no user.name.
+     */
+    public String getDisplayName() {
+        checkGlobalConfig();
+        if (!mResolved) {
+            resolve();
+        }
+        return mDisplayName;
+    }
+
+    /**
+     * The pair controller for the project, toggling a team member through it updates the identity.
+     *
+     * @return controller or null if the project has no .pairs.
+     */
+    public PairController getPairController() {
+        if (!mResolved) {
+            resolve();
+        }
+        return mPairController;
+    }
+
+    /**
+     * Forget the resolved identity, it is resolved again on next use, and tell the project's listeners.
+     */
+    public void invalidate() {
+        synchronized (this) {
+            if (!mResolved) {
+                return;
+            }
+            mResolved = false;
+            mDisplayName = null;
+            mPairController = null;
+        }
+        if (!myProject.isDisposed()) {
+            myProject.getMessageBus().syncPublisher(GitIdentityNotifier.IDENTITY_TOPIC).identityChanged(myProject);
+        }
+    }
+
+    private synchronized void resolve() {
+        if (mResolved) {
+            return;
+        }
+
+        String projectPath = myProject.getBasePath();
+        if (projectPath == null) {
+            mDisplayName = "";
+            mResolved = true;
+            return;
+        }
+
+        GitRunner gitRunner = new GitRunner(projectPath);
+        PairController pairController = null;
+        String displayName = null;
+        PairConfig pairConfig = PairConfigManager.getInstance(myProject).getPairConfig();
+        if (pairConfig != null) {
+            pairController = new PairController(pairConfig, gitRunner);
+            pairController.init();
+            pairController.setPairChangeListener(this::invalidate);
+            displayName = pairController.getPairDisplayName();
+        }
+        if (displayName == null || displayName.isEmpty()) {
+            displayName = gitRunner.getUserName();
+        }
+
+        mPairController = pairController;
+        mDisplayName = displayName;
+        mResolved = true;
+    }
+
+    private boolean isIdentityFile(String path) {
+        String projectPath = myProject.getBasePath();
+        if (projectPath != null && path.equals(projectPath + "/.git/config")) {
+            return true;
+        }
+        for (File file : mGlobalConfigFiles) {
+            if (path.equals(toSystemIndependentPath(file))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void checkGlobalConfig() {
+        long now = System.currentTimeMillis();
+        if (now - mLastGlobalConfigCheckMillis < GLOBAL_CONFIG_CHECK_INTERVAL_MILLIS) {
+            return;
+        }
+        mLastGlobalConfigCheckMillis = now;
+        if (readGlobalConfigStamps()) {
+            invalidate();
+        }
+    }
+
+    // returns true if any of the global config files changed since the last read.
+    private synchronized boolean readGlobalConfigStamps() {
+        boolean changed = false;
+        for (int i = 0; i < mGlobalConfigFiles.size(); i++) {
+            long stamp = mGlobalConfigFiles.get(i).lastModified();
+            if (stamp != mGlobalConfigStamps[i]) {
+                mGlobalConfigStamps[i] = stamp;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    private static String toSystemIndependentPath(File file) {
+        return file.getPath().replace('\\', '/');
+    }
+}
@@ -0,0 +1,118 @@
+package painpoint.component;
+
+import com.intellij.ide.plugins.PluginManager;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.ApplicationComponent;
+import com.intellij.openapi.project.Project;
+import org.jetbrains.annotations.NotNull;
+import painpoint.domain.painpoint.PainPointDomain;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * Owns the one PainPointDomain shared by every open project, so the schema check, connection pool,
+ * vote cache and write-behind queue exist once per IDE instead of once per project and action.
+ * Projects take a handle with {@link #acquire(Project)} and give it back with {@link #release(Project)}.
+ */
+public class PainPointStoreComponent implements ApplicationComponent {
+
+    private static final long RELEASE_FLUSH_TIMEOUT_MILLIS = 2000;
+    // leaves one pooled connection for decorating on the EDT and one for the write-behind thread.
+    private static final int BACKGROUND_LOOKUPS = PainPointDomain.POOL_MAX_SIZE - 2;
+
+    private final Map<Project, Integer> mHandles = new HashMap<>();
+    private final Semaphore mBackgroundLookups = new Semaphore(BACKGROUND_LOOKUPS, true);
+    private PainPointDomain mPainPointDomain;
+
+    public static PainPointStoreComponent getInstance() {
+        return ApplicationManager.getApplication().getComponent(PainPointStoreComponent.class);
+    }
+
+    @Override
+    public void initComponent() {
+    }
+
+    @Override
+    public synchronized void disposeComponent() {
+        if (!mHandles.isEmpty()) {
+            PluginManager.getLogger().warn("PainPointStoreComponent disposed with " + mHandles.size() + " projects still holding the store");
+            mHandles.clear();
+        }
+        if (mPainPointDomain != null) {
+            mPainPointDomain.dispose();
+            mPainPointDomain = null;
+        }
+    }
+
+    @NotNull
+    @Override
+    public String getComponentName() {
+        return "PainPointStoreComponent";
+    }
+
+    /**
+     * Take a handle on the shared store for a project.
+     *
+     * @param project project that uses the store until it calls {@link #release(Project)}.
+     * @return the shared domain.
+     */
+    public synchronized PainPointDomain acquire(@NotNull Project project) {
+        Integer count = mHandles.get(project);
+        mHandles.put(project, count == null ? 1 : count + 1);
+        return getPainPointDomain();
+    }
+
+    /**
+     * Give back a handle from {@link #acquire(Project)}.
+     * The store and its cache stay up for the other projects, queued votes are written when the last project lets go.
+     *
+     * @param project project that is done with the store.
+     */
+    public synchronized void release(@NotNull Project project) {
+        Integer count = mHandles.get(project);
+        if (count == null) {
+            return;
+        }
+        if (count > 1) {
+            mHandles.put(project, count - 1);
+        }
+        else {
+            mHandles.remove(project);
+        }
+        if (mHandles.isEmpty() && mPainPointDomain != null) {
+            mPainPointDomain.flushWrites(RELEASE_FLUSH_TIMEOUT_MILLIS);
+        }
+    }
+
+    /**
+     * The shared domain, created on first use.
+     *
+     * @return the shared domain.
+     */
+    public synchronized PainPointDomain getPainPointDomain() {
+        if (mPainPointDomain == null) {
+            mPainPointDomain = new PainPointDomain();
+        }
+        return mPainPointDomain;
+    }
+
+    /**
+     * Run a store lookup from a background thread, ex. a warm-up batch.
+     * At most {@value #BACKGROUND_LOOKUPS} run at a time across every open project, so they never drain the shared pool.
+     *
+     * @param lookup the lookup, waits for a turn first.
+     * @return what the lookup returned.
+     */
+    public <T> T runBackgroundLookup(Supplier<T> lookup) {
+        mBackgroundLookups.acquireUninterruptibly();
+        try {
+            return lookup.get();
+        }
+        finally {
+            mBackgroundLookups.release();
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package painpoint.component;
+
+import com.intellij.ide.plugins.PluginManager;
+import com.intellij.openapi.components.AbstractProjectComponent;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.util.messages.MessageBusConnection;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import painpoint.pairing.PairConfig;
+import painpoint.pairing.PairConfigNotifier;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Holds the project's parsed .pairs file.
+ * It is read once and read again only when a VFS event says the file changed, every consumer shares the snapshot.
+ */
+public class PairConfigManager extends AbstractProjectComponent {
+
+    private static final String PAIRS_FILE_NAME = ".pairs";
+
+    private MessageBusConnection mConnection;
+    private volatile boolean mLoaded;
+    private volatile PairConfig mPairConfig;
+
+    public PairConfigManager(Project project) {
+        super(project);
+    }
+
+    public static PairConfigManager getInstance(Project project) {
+        return project.getComponent(PairConfigManager.class);
+    }
+
+    @Override
+    public void initComponent() {
+        super.initComponent();
+        mConnection = myProject.getMessageBus().connect();
+        mConnection.subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener.Adapter() {
+            @Override
+            public void after(@NotNull List<? extends VFileEvent> events) {
+                String pairsPath = getPairsPath();
+                if (pairsPath == null) {
+                    return;
+                }
+                for (VFileEvent event : events) {
+                    if (pairsPath.equals(event.getPath())) {
+                        reload();
+                        return;
+                    }
+                }
+            }
+        });
+    }
+
+    @Override
+    public void disposeComponent() {
+        if (mConnection != null) {
+            mConnection.disconnect();
+        }
+        super.disposeComponent();
+    }
+
+    /**
+     * The parsed .pairs file.
+     *
+     * @return shared, immutable snapshot, or null if the project has no .pairs.
+     */
+    @Nullable
+    public PairConfig getPairConfig() {
+        if (!mLoaded) {
+            synchronized (this) {
+                if (!mLoaded) {
+                    mPairConfig = load();
+                    mLoaded = true;
+                }
+            }
+        }
+        return mPairConfig;
+    }
+
+    /**
+     * Read .pairs again and tell the project's listeners.
+     */
+    public void reload() {
+        PairConfig pairConfig;
+        synchronized (this) {
+            pairConfig = load();
+            mPairConfig = pairConfig;
+            mLoaded = true;
+        }
+        if (!myProject.isDisposed()) {
+            myProject.getMessageBus().syncPublisher(PairConfigNotifier.PAIR_CONFIG_TOPIC).pairConfigChanged(myProject, pairConfig);
+        }
+    }
+
+    private PairConfig load() {
+        String pairsPath = getPairsPath();
+        if (pairsPath == null) {
+            return null;
+        }
+        try {
+            String configYaml = new String(Files.readAllBytes(Paths.get(pairsPath)), StandardCharsets.UTF_8);
+            return new PairConfig(configYaml);
+        }
+        catch (NoSuchFileException ex) {
+            return null;
+        }
+        catch (IOException ex) {
+            PluginManager.getLogger().warn("PairConfigManager couldn't read " + pairsPath + ": " + ex.getMessage());
+            return null;
+        }
+    }
+
+    private String getPairsPath() {
+        String projectPath = myProject.getBasePath();
+        return projectPath != null ? projectPath + "/" + PAIRS_FILE_NAME : null;
+    }
+}
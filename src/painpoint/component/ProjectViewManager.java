@@ -1,35 +1,72 @@
 package painpoint.component;
 
+import painpoint.decoration.ClassIdCache;
 import painpoint.decoration.DecorationToggleNotifier;
+import painpoint.decoration.PresentationCache;
+import painpoint.decoration.PresentationResolver;
+import painpoint.decoration.PresentationWarmUp;
+import painpoint.decoration.TodoTracker;
 import com.intellij.ide.plugins.PluginManager;
 import com.intellij.ide.projectView.ProjectView;
+import com.intellij.ide.projectView.impl.AbstractProjectViewPane;
+import com.intellij.ide.util.treeView.AbstractTreeBuilder;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.components.AbstractProjectComponent;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.DumbService;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vcs.changes.committed.VcsConfigurationChangeListener;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiClassOwner;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
 import com.intellij.util.messages.MessageBusConnection;
+import org.jetbrains.annotations.NotNull;
+import painpoint.domain.painpoint.model.ClassAggregate;
 import painpoint.domain.painpoint.model.PainPoint;
 import painpoint.domain.painpoint.PainPointDomain;
-import painpoint.git.GitRunner;
-import painpoint.pairing.PairConfig;
-import painpoint.pairing.PairController;
+import painpoint.domain.painpoint.VoteListener;
+import painpoint.git.GitIdentityNotifier;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
-import java.io.IOException;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class ProjectViewManager extends AbstractProjectComponent {
 
+    private static final String REFRESH_WINDOW_PROPERTY = "painpoint.refresh.window.millis";
+    private static final long DEFAULT_REFRESH_WINDOW_MILLIS = 300;
+
     private MessageBusConnection mConnection;
     private PainPointDomain mPainPointDomain;
-    private PairController mPairController;
+    private final PresentationCache mPresentationCache = new PresentationCache();
+    private final Set<Integer> mChangedClassIds = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean mNodeUpdateQueued = new AtomicBoolean();
+    // the votes moved the classes' store stamps, so repainting re-resolves them while the old decoration stays up.
+    private final VoteListener mVoteListener = this::updateClassNodes;
+    private final RefreshScheduler mRefreshScheduler;
+    private final TodoTracker mTodoTracker = new TodoTracker(mPresentationCache, this::updateClassNodes);
+    private final ClassIdCache mClassIdCache;
+    private final PresentationResolver mPresentationResolver;
 
     public ProjectViewManager(Project project) {
         super(project);
-        updateState(project);
-        mPainPointDomain = new PainPointDomain();
+        mPainPointDomain = PainPointStoreComponent.getInstance().acquire(project);
+        mPainPointDomain.addVoteListener(mVoteListener);
+        mClassIdCache = new ClassIdCache(project);
+        mPresentationResolver = new PresentationResolver(project, mPresentationCache, this::updateClassNodes);
+        // toggles, branch changes and votes come in bursts, they share one reload and one repaint.
+        mRefreshScheduler = new RefreshScheduler(Long.getLong(REFRESH_WINDOW_PROPERTY, DEFAULT_REFRESH_WINDOW_MILLIS),
+                this::reloadPainPoints, this::repaintProjectView, ApplicationManager.getApplication()::invokeLater);
     }
 
     public static ProjectViewManager getInstance(Project project) {
@@ -40,33 +77,151 @@ public class ProjectViewManager extends AbstractProjectComponent {
     public void initComponent() {
         super.initComponent();
         initBusSubstription();
-        refreshProjectView(myProject);
     }
 
+    @Override
+    public void projectOpened() {
+        super.projectOpened();
+        // load the votes and decorate every class in the background once indexing is done, instead of on the EDT.
+        DumbService.getInstance(myProject).runWhenSmart(() -> {
+            if (!myProject.isDisposed()) {
+                ProgressManager.getInstance().run(new PresentationWarmUp(myProject));
+            }
+        });
+    }
+
+    @Override
+    public void disposeComponent() {
+        mRefreshScheduler.dispose();
+        if (mConnection != null) {
+            mConnection.disconnect();
+        }
+        mPainPointDomain.removeVoteListener(mVoteListener);
+        PainPointStoreComponent.getInstance().release(myProject);
+        super.disposeComponent();
+    }
+
+    public PainPointDomain getPainPointDomain() {
+        return mPainPointDomain;
+    }
+
+    public PresentationCache getPresentationCache() {
+        return mPresentationCache;
+    }
+
+    public ClassIdCache getClassIdCache() {
+        return mClassIdCache;
+    }
+
+    public PresentationResolver getPresentationResolver() {
+        return mPresentationResolver;
+    }
+
+    public TodoTracker getTodoTracker() {
+        return mTodoTracker;
+    }
+
+    public RefreshScheduler getRefreshScheduler() {
+        return mRefreshScheduler;
+    }
+
+    /**
+     * Reload the votes and refresh the project view, requests close together are merged into one refresh.
+     */
     public void refreshProjectView(final Project project) {
-        ApplicationManager.getApplication().invokeLater(() -> {
-            final ProjectView projectView = ProjectView.getInstance(project);
-            PluginManager.getLogger().warn("[ WAT ] Refreshing Project View");
-            try {
-                mPainPointDomain.getPainPointMap(true);
+        mRefreshScheduler.requestRefresh();
+    }
+
+    /**
+     * Repaint only the tree nodes of the given classes, instead of refreshing the whole project view.
+     * Calls close together are merged into one pass on the EDT.
+     */
+    public void updateClassNodes(Collection<Integer> classIds) {
+        mChangedClassIds.addAll(classIds);
+        if (mNodeUpdateQueued.compareAndSet(false, true)) {
+            ApplicationManager.getApplication().invokeLater(this::flushClassNodeUpdates);
+        }
+    }
+
+    private void flushClassNodeUpdates() {
+        mNodeUpdateQueued.set(false);
+        List<Integer> classIds = new ArrayList<>(mChangedClassIds);
+        mChangedClassIds.removeAll(classIds);
+        if (classIds.isEmpty() || myProject.isDisposed()) {
+            return;
+        }
+        AbstractProjectViewPane pane = ProjectView.getInstance(myProject).getCurrentProjectViewPane();
+        AbstractTreeBuilder treeBuilder = pane != null ? pane.getTreeBuilder() : null;
+        if (treeBuilder == null || treeBuilder.isDisposed()) {
+            return;
+        }
+        PsiManager psiManager = PsiManager.getInstance(myProject);
+        for (VirtualFile virtualFile : mPresentationCache.getFilesForClassIds(classIds)) {
+            PsiFile psiFile = psiManager.findFile(virtualFile);
+            if (psiFile == null) {
+                continue;
             }
-            catch (SQLException sqlEx) {
-                PluginManager.getLogger().warn("[ WAT ] SQLException:" + sqlEx.getMessage());
+            // the node is the class when the file has one, otherwise the file.  Only presentations change, not structure.
+            if (psiFile instanceof PsiClassOwner) {
+                for (PsiClass psiClass : ((PsiClassOwner) psiFile).getClasses()) {
+                    treeBuilder.queueUpdateFrom(psiClass, false, false);
+                }
             }
-            projectView.refresh();
-        });
+            treeBuilder.queueUpdateFrom(psiFile, false, false);
+        }
+    }
+
+    // runs on the scheduler's thread, not the EDT.
+    private void reloadPainPoints() {
+        PluginManager.getLogger().debug("Reloading pain points for the project view");
+        try {
+            mPainPointDomain.getPainPointMap(true);
+        }
+        catch (SQLException sqlEx) {
+            PluginManager.getLogger().warn("[ WAT ] SQLException:" + sqlEx.getMessage());
+        }
+    }
+
+    private void repaintProjectView() {
+        if (!myProject.isDisposed()) {
+            ProjectView.getInstance(myProject).refresh();
+        }
     }
 
     private void initBusSubstription() {
         mConnection = myProject.getMessageBus().connect();
         mConnection.subscribe(DecorationToggleNotifier.TOGGLE_TOPIC, this::refreshProjectView);
         mConnection.subscribe(VcsConfigurationChangeListener.BRANCHES_CHANGED, (project, vcsRoot) -> refreshProjectView(project));
+        // presentations hold the voter's pain point ids, a new identity makes all of them stale.
+        mConnection.subscribe(GitIdentityNotifier.IDENTITY_TOPIC, project -> {
+            mPresentationCache.invalidateAll();
+            refreshProjectView(project);
+        });
+
+        // class ids come from paths, forget them before a rename or move.
+        mConnection.subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener.Adapter() {
+            @Override
+            public void before(@NotNull List<? extends VFileEvent> events) {
+                mClassIdCache.beforePathChanges(events);
+            }
+        });
+
+        // an edit updates the file's TODO count in place, rescanning only the comments it touched.
+        PsiManager.getInstance(myProject).addPsiTreeChangeListener(mTodoTracker, myProject);
     }
 
     public List<PainPoint> getPainPointsForClassId(int classId) {
         return mPainPointDomain.getPainPointsForClassId(true, classId);
     }
 
+    public ClassAggregate getAggregateForClassId(int classId) {
+        return mPainPointDomain.getAggregateForClassId(classId);
+    }
+
+    public Map<Integer, ClassAggregate> getAggregatesForClassIds(Collection<Integer> classIds) {
+        return mPainPointDomain.getAggregatesForClassIds(classIds);
+    }
+
     /**
      * Ask git who is the current user, and update our internal state.
      */
@@ -75,28 +230,8 @@ public class ProjectViewManager extends AbstractProjectComponent {
             return false;
         }
 
-        String projectPath = project.getBasePath();
-        if (projectPath == null) {
-            return false;
-        }
-
-        String configFile = projectPath.concat("/.pairs");
-        String configYaml = "";
-        try {
-            BufferedReader br = new BufferedReader(new FileReader(configFile));
-            String line;
-            while ((line = br.readLine()) != null) {
-                configYaml += line + "\n";
-            }
-        } catch (IOException e) {
-            System.out.println("Git Pair plugin couldn't open " + configFile + ": " + e.getMessage());
-            return false;
-        }
-        PairConfig pairConfig = new PairConfig(configYaml);
-        GitRunner gitRunner = new GitRunner(projectPath);
-        mPairController = new PairController(pairConfig, gitRunner);
-        mPairController.init();
-
-        return true;
+        GitIdentityManager gitIdentityManager = GitIdentityManager.getInstance(project);
+        gitIdentityManager.invalidate();
+        return gitIdentityManager.getPairController() != null;
     }
 }
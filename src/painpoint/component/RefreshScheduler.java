@@ -0,0 +1,134 @@
+package painpoint.component;
+
+import com.intellij.ide.plugins.PluginManager;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Merges bursts of project view refresh requests into one refresh.
+ * The first request starts a window, requests inside it join the same refresh, and the reload runs on a background
+ * thread when the window closes.  Only the repaint is handed to the UI executor.
+ * A request that comes in while a reload runs schedules one more refresh after it.
+ */
+public class RefreshScheduler {
+
+    private final Object mLock = new Object();
+    private final ScheduledExecutorService mExecutor;
+    private final Runnable mReload;
+    private final Runnable mRepaint;
+    private final Executor mUiExecutor;
+    private final AtomicLong mRequestedCount = new AtomicLong();
+    private final AtomicLong mExecutedCount = new AtomicLong();
+    private volatile long mWindowMillis;
+    private boolean mScheduled;
+    private boolean mRunning;
+    private boolean mRequestedWhileRunning;
+    private boolean mDisposed;
+
+    /**
+     * @param windowMillis how long to collect requests before refreshing.
+     * @param reload       reloads the data, runs on the scheduler's thread.
+     * @param repaint      repaints the view, handed to the UI executor after the reload.
+     * @param uiExecutor   runs the repaint, ex. on the EDT.
+     */
+    public RefreshScheduler(long windowMillis, Runnable reload, Runnable repaint, Executor uiExecutor) {
+        mWindowMillis = windowMillis;
+        mReload = reload;
+        mRepaint = repaint;
+        mUiExecutor = uiExecutor;
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "PainPoint refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        mExecutor = executor;
+    }
+
+    /**
+     * Ask for a refresh, it joins the one already waiting if there is one.
+     */
+    public void requestRefresh() {
+        mRequestedCount.incrementAndGet();
+        synchronized (mLock) {
+            if (mDisposed || mScheduled) {
+                return;
+            }
+            if (mRunning) {
+                mRequestedWhileRunning = true;
+                return;
+            }
+            schedule();
+        }
+    }
+
+    public void setWindowMillis(long windowMillis) {
+        mWindowMillis = windowMillis;
+    }
+
+    public long getWindowMillis() {
+        return mWindowMillis;
+    }
+
+    /**
+     * @return number of refreshes asked for with {@link #requestRefresh()}.
+     */
+    public long getRequestedCount() {
+        return mRequestedCount.get();
+    }
+
+    /**
+     * @return number of reloads that ran, the difference to {@link #getRequestedCount()} is what was merged.
+     */
+    public long getExecutedCount() {
+        return mExecutedCount.get();
+    }
+
+    /**
+     * Drop the waiting refresh and stop the scheduler's thread.
+     */
+    public void dispose() {
+        synchronized (mLock) {
+            mDisposed = true;
+        }
+        mExecutor.shutdownNow();
+    }
+
+    // Called holding mLock.
+    private void schedule() {
+        mScheduled = true;
+        mExecutor.schedule(this::refresh, mWindowMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void refresh() {
+        synchronized (mLock) {
+            mScheduled = false;
+            if (mDisposed) {
+                return;
+            }
+            mRunning = true;
+        }
+        try {
+            mReload.run();
+            mExecutedCount.incrementAndGet();
+            mUiExecutor.execute(mRepaint);
+        }
+        catch (RuntimeException ex) {
+            PluginManager.getLogger().warn("RefreshScheduler refresh failed: " + ex.getMessage());
+        }
+        finally {
+            synchronized (mLock) {
+                mRunning = false;
+                if (mRequestedWhileRunning && !mDisposed) {
+                    mRequestedWhileRunning = false;
+                    schedule();
+                }
+            }
+        }
+        PluginManager.getLogger().debug("RefreshScheduler " + mExecutedCount.get() + " refreshes for " + mRequestedCount.get() + " requests");
+    }
+}
@@ -0,0 +1,66 @@
+package painpoint.component;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class RefreshSchedulerTest {
+
+    @Test
+    public void testRequestRefresh_burstIsOneRefresh() throws Exception {
+
+        // GIVEN a scheduler with a 100ms window.
+        AtomicInteger reloads = new AtomicInteger();
+        CountDownLatch repainted = new CountDownLatch(1);
+        RefreshScheduler scheduler = new RefreshScheduler(100, reloads::incrementAndGet, repainted::countDown, Runnable::run);
+
+        // WHEN a burst of requests comes in.
+        for (int i = 0; i < 10; i++) {
+            scheduler.requestRefresh();
+        }
+
+        // THEN the data is reloaded and the view repainted once.
+        assertTrue(repainted.await(2, TimeUnit.SECONDS));
+        Thread.sleep(200);
+        assertEquals(1, reloads.get());
+        assertEquals(10, scheduler.getRequestedCount());
+        assertEquals(1, scheduler.getExecutedCount());
+        scheduler.dispose();
+    }
+
+    @Test
+    public void testRequestRefresh_duringReloadRefreshesAgain() throws Exception {
+
+        // GIVEN a reload that is running.
+        CountDownLatch reloadStarted = new CountDownLatch(1);
+        CountDownLatch finishReload = new CountDownLatch(1);
+        CountDownLatch repainted = new CountDownLatch(2);
+        RefreshScheduler scheduler = new RefreshScheduler(10, () -> {
+            reloadStarted.countDown();
+            try {
+                finishReload.await(2, TimeUnit.SECONDS);
+            }
+            catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }, repainted::countDown, Runnable::run);
+        scheduler.requestRefresh();
+        assertTrue(reloadStarted.await(2, TimeUnit.SECONDS));
+
+        // WHEN more requests come in before it finishes.
+        scheduler.requestRefresh();
+        scheduler.requestRefresh();
+        finishReload.countDown();
+
+        // THEN they are merged into one more refresh, so the later change isn't lost.
+        assertTrue(repainted.await(2, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        assertEquals(3, scheduler.getRequestedCount());
+        assertEquals(2, scheduler.getExecutedCount());
+        scheduler.dispose();
+    }
+}
@@ -10,6 +10,8 @@ import com.intellij.ide.projectView.PresentationData;
 import com.intellij.ide.projectView.ProjectViewNode;
 import com.intellij.ide.projectView.ProjectViewNodeDecorator;
 import com.intellij.ide.projectView.impl.nodes.ClassTreeNode;
+import com.intellij.ide.projectView.impl.nodes.PsiFileNode;
+import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.packageDependencies.ui.PackageDependenciesNode;
 import com.intellij.ui.ColoredTreeCellRenderer;
 
@@ -20,9 +22,24 @@ public class CCProjectViewNodeDecorator implements ProjectViewNodeDecorator {
         if (viewNode != null && viewNode instanceof ClassTreeNode) {
 
             Project project = viewNode.getProject();
-            PainPointPresentation presentation = PainPointPresentationFactory.creatPresentation(project, (ClassTreeNode)viewNode);
-            ClassFileDecoration classFileDecoration = new ClassFileDecoration(presentation);
-            classFileDecoration.decorate(viewNode, presentationData);
+            PainPointPresentation presentation = PainPointPresentationFactory.getCachedPresentation(project, (ClassTreeNode)viewNode);
+            // not resolved yet, the node is repainted when it is.
+            if (presentation != null) {
+                ClassFileDecoration classFileDecoration = new ClassFileDecoration(presentation);
+                classFileDecoration.decorate(viewNode, presentationData);
+            }
+        }
+        else if (viewNode instanceof PsiFileNode) {
+
+            // files that aren't shown as a class, ex. Kotlin, XML and Gradle files.
+            VirtualFile virtualFile = viewNode.getVirtualFile();
+            if (virtualFile != null && CommentScanner.canScan(virtualFile)) {
+                PainPointPresentation presentation = PainPointPresentationFactory.getCachedPresentation(viewNode.getProject(), virtualFile);
+                if (presentation != null) {
+                    ClassFileDecoration classFileDecoration = new ClassFileDecoration(presentation);
+                    classFileDecoration.decorate(viewNode, presentationData);
+                }
+            }
         }
     }
 
@@ -13,7 +13,25 @@ import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.util.PsiUtilBase;
 import com.intellij.ui.SimpleTextAttributes;
 
+import java.util.EnumMap;
+import java.util.Map;
+
 public class ClassFileDecoration {
+
+    // the decorator runs on every paint of every class node, so attributes and labels are built once.
+    private static final Map<ClassStatus, SimpleTextAttributes> ATTRIBUTES_BY_CLASS_STATUS = new EnumMap<>(ClassStatus.class);
+    private static final SimpleTextAttributes TODO_ATTRIBUTES = new SimpleTextAttributes(SimpleTextAttributes.STYLE_SMALLER, JBColor.BLUE);
+    private static final String[] STATUS_LABELS = new String[100];
+
+    static {
+        for (ClassStatus status : ClassStatus.values()) {
+            ATTRIBUTES_BY_CLASS_STATUS.put(status, new SimpleTextAttributes(SimpleTextAttributes.STYLE_SMALLER, status.getColor()));
+        }
+        for (int i = 0; i < STATUS_LABELS.length; i++) {
+            STATUS_LABELS[i] = "  - " + i;
+        }
+    }
+
     private final PainPointPresentation mPainPointsPresentation;
 
     public ClassFileDecoration(PainPointPresentation painPointsPresentation) {
@@ -34,76 +52,52 @@ public class ClassFileDecoration {
     }
 
     public void decorate(ProjectViewNode node, PresentationData data) {
-        addTodoStatusText(data, getName(node));
-        addPainPointStatusText(data, getName(node));
-    }
-
-    private SimpleTextAttributes attributesByClassStatus(ClassStatus status) {
-        return new SimpleTextAttributes(SimpleTextAttributes.STYLE_SMALLER,
-                status.getColor());
-    }
-
-    protected void addPainPointStatusText(PresentationData data, String text) {
+        boolean hasPainPoints = mPainPointsPresentation.hasPainPoints();
         boolean hasTodos = mPainPointsPresentation.hasTodos();
+        if (!hasPainPoints && !hasTodos) {
+            return;
+        }
+        String name = getName(node);
+        String pinnedLabel = hasPainPoints ? statusLabel(mPainPointsPresentation.getPinnedCount()) : null;
+        String todoLabel = hasTodos ? statusLabel(mPainPointsPresentation.getTodoCount()) : null;
+
+        // one pass over the fragments already there, for both labels.
+        boolean nameShown = false;
+        boolean pinnedShown = false;
+        boolean todoShown = false;
+        for (ColoredFragment existing : data.getColoredText()) {
+            String existingText = existing.getText();
+            nameShown |= existingText.contains(name);
+            pinnedShown |= pinnedLabel != null && isNameWithLabel(existingText, name, pinnedLabel);
+            todoShown |= todoLabel != null && isNameWithLabel(existingText, name, todoLabel);
+        }
 
-        if(hasTodos) {
-
-            int todoCount = mPainPointsPresentation.getTodoCount();
-
-            JBColor jbColor = JBColor.BLUE;
-
-            ClassStatus status = mPainPointsPresentation.getClassStatus();
-            SimpleTextAttributes textAttributes = new SimpleTextAttributes(SimpleTextAttributes.STYLE_SMALLER, jbColor);
-            String statusLabel = " - " + todoCount;
-            String finishText = text + " " + statusLabel;
-
-            boolean add = true;
-            boolean addOriginal = true;
-            for (ColoredFragment existing : data.getColoredText()) {
-                if (existing.getText().equals(finishText)) {
-                    add = false;
-                }
-                if (existing.getText().contains(text)) {
-                    addOriginal = false;
-                }
-            }
-            if (add) {
-
-                if(addOriginal) {
-                    data.addText(text, SimpleTextAttributes.REGULAR_ATTRIBUTES);
-                }
-                data.addText(" " + statusLabel, textAttributes);
-            }
+        if (hasPainPoints && !pinnedShown) {
+            nameShown = addStatusText(data, name, nameShown, pinnedLabel,
+                    ATTRIBUTES_BY_CLASS_STATUS.get(mPainPointsPresentation.getClassStatus()));
+        }
+        if (hasTodos && !todoShown) {
+            addStatusText(data, name, nameShown, todoLabel, TODO_ATTRIBUTES);
         }
     }
 
-    protected void addTodoStatusText(PresentationData data, String text) {
-
-        boolean hasPainPoints = mPainPointsPresentation.hasPainPoints();
-        if(hasPainPoints) {
-
-            ClassStatus status = mPainPointsPresentation.getClassStatus();
-            SimpleTextAttributes textAttributes = attributesByClassStatus(status);
+    // adds the name if it isn't shown yet, then the label.  Returns whether the name is shown now.
+    private static boolean addStatusText(PresentationData data, String name, boolean nameShown, String label, SimpleTextAttributes textAttributes) {
+        if (!nameShown) {
+            data.addText(name, SimpleTextAttributes.REGULAR_ATTRIBUTES);
+        }
+        data.addText(label, textAttributes);
+        return true;
+    }
 
-            String statusLabel = " - " + mPainPointsPresentation.getPinnedCount();
-            String finishText = text + " " + statusLabel;
-            boolean add = true;
-            boolean addOriginal = true;
+    // same as existingText.equals(name + label), without building the string.
+    private static boolean isNameWithLabel(String existingText, String name, String label) {
+        return existingText.length() == name.length() + label.length()
+                && existingText.startsWith(name)
+                && existingText.endsWith(label);
+    }
 
-            for (ColoredFragment existing : data.getColoredText()) {
-                if (existing.getText().equals(finishText)) {
-                    add = false;
-                }
-                if (existing.getText().contains(text)) {
-                    addOriginal = false;
-                }
-            }
-            if (add) {
-                if(addOriginal) {
-                    data.addText(text, SimpleTextAttributes.REGULAR_ATTRIBUTES);
-                }
-                data.addText(" " + statusLabel, textAttributes);
-            }
-        }
+    private static String statusLabel(int count) {
+        return count < STATUS_LABELS.length ? STATUS_LABELS[count] : "  - " + count;
     }
 }
@@ -0,0 +1,60 @@
+package painpoint.decoration;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.newvfs.events.VFileDeleteEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileMoveEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFilePropertyChangeEvent;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers each file's class id, so its path isn't taken apart again for every paint.
+ * The id comes from the file's path, so it is forgotten when the file or a folder above it is renamed, moved or deleted.
+ */
+public class ClassIdCache {
+
+    private final Project mProject;
+    private final Map<VirtualFile, Integer> mClassIds = new ConcurrentHashMap<>();
+
+    public ClassIdCache(Project project) {
+        mProject = project;
+    }
+
+    /**
+     * @return the file's class id, see {@link ClassFileIdCalulator#classIdForVirtualFile(Project, VirtualFile)}.
+     */
+    public Integer getClassId(VirtualFile virtualFile) {
+        Integer classId = mClassIds.get(virtualFile);
+        if (classId == null) {
+            classId = ClassFileIdCalulator.classIdForVirtualFile(mProject, virtualFile);
+            if (classId != null) {
+                mClassIds.put(virtualFile, classId);
+            }
+        }
+        return classId;
+    }
+
+    /**
+     * Forget the ids of files whose path is about to change, call before the VFS applies the events.
+     */
+    public void beforePathChanges(List<? extends VFileEvent> events) {
+        for (VFileEvent event : events) {
+            boolean pathChanges = event instanceof VFileMoveEvent || event instanceof VFileDeleteEvent
+                    || (event instanceof VFilePropertyChangeEvent && VirtualFile.PROP_NAME.equals(((VFilePropertyChangeEvent) event).getPropertyName()));
+            VirtualFile virtualFile = event.getFile();
+            if (!pathChanges || virtualFile == null) {
+                continue;
+            }
+            if (virtualFile.isDirectory()) {
+                // every file below it has a new path.
+                mClassIds.clear();
+                return;
+            }
+            mClassIds.remove(virtualFile);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package painpoint.decoration;
+
+import com.intellij.lang.Language;
+import com.intellij.lang.LanguageParserDefinitions;
+import com.intellij.lang.ParserDefinition;
+import com.intellij.lexer.Lexer;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.fileEditor.impl.LoadTextUtil;
+import com.intellij.openapi.fileTypes.FileType;
+import com.intellij.openapi.fileTypes.LanguageFileType;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.tree.IElementType;
+import com.intellij.psi.tree.TokenSet;
+
+/**
+ * Counts comment markers by running the file language's lexer and scanning only its comment tokens, no PSI is built.
+ * Works for every language with a registered parser definition, ex. Java, Kotlin, XML and Groovy for Gradle files.
+ */
+public final class CommentScanner {
+
+    // files the IDE wouldn't parse either.
+    private static final long MAX_FILE_LENGTH = 2500000;
+
+    private CommentScanner() {
+    }
+
+    /**
+     * @return whether the file's language has a lexer that knows its comments.
+     */
+    public static boolean canScan(VirtualFile virtualFile) {
+        return !virtualFile.isDirectory() && virtualFile.getLength() <= MAX_FILE_LENGTH && getParserDefinition(virtualFile.getFileType()) != null;
+    }
+
+    /**
+     * Count the markers in a file's comments, with unsaved edits.
+     *
+     * @return the counts, or null if the file's language has no lexer.
+     */
+    public static MarkerCounts countMarkers(Project project, VirtualFile virtualFile) {
+        if (!canScan(virtualFile)) {
+            return null;
+        }
+        Document document = FileDocumentManager.getInstance().getCachedDocument(virtualFile);
+        CharSequence text = document != null ? document.getImmutableCharSequence() : LoadTextUtil.loadText(virtualFile);
+        return countMarkers(project, getParserDefinition(virtualFile.getFileType()), text);
+    }
+
+    /**
+     * Count the markers in the comments of a file's text.
+     *
+     * @return the counts, or null if the file type's language has no lexer.
+     */
+    public static MarkerCounts countMarkers(Project project, FileType fileType, CharSequence text) {
+        ParserDefinition parserDefinition = getParserDefinition(fileType);
+        return parserDefinition != null ? countMarkers(project, parserDefinition, text) : null;
+    }
+
+    private static MarkerCounts countMarkers(Project project, ParserDefinition parserDefinition, CharSequence text) {
+        MarkerScanner scanner = MarkerScanner.getDefault();
+        int[] counts = new int[scanner.getMarkerCount()];
+        TokenSet commentTokens = parserDefinition.getCommentTokens();
+        Lexer lexer = parserDefinition.createLexer(project);
+        lexer.start(text, 0, text.length(), 0);
+        for (IElementType tokenType = lexer.getTokenType(); tokenType != null; tokenType = lexer.getTokenType()) {
+            if (commentTokens.contains(tokenType)) {
+                scanner.scan(text, lexer.getTokenStart(), lexer.getTokenEnd(), counts);
+            }
+            lexer.advance();
+        }
+        return new MarkerCounts(scanner, counts);
+    }
+
+    private static ParserDefinition getParserDefinition(FileType fileType) {
+        if (!(fileType instanceof LanguageFileType)) {
+            return null;
+        }
+        Language language = ((LanguageFileType) fileType).getLanguage();
+        return language != null ? LanguageParserDefinitions.INSTANCE.forLanguage(language) : null;
+    }
+}
@@ -0,0 +1,54 @@
+package painpoint.decoration;
+
+import com.intellij.psi.PsiFile;
+import com.intellij.testFramework.fixtures.LightCodeInsightFixtureTestCase;
+
+import static org.junit.Assert.assertEquals;
+
+public class CommentScannerTest extends LightCodeInsightFixtureTestCase {
+
+    @Override
+    protected String getTestDataPath() {
+        return "testData";
+    }
+
+    public void testCountMarkers_JavaComments() throws Exception {
+
+        // GIVEN a test java class with five todos
+        myFixture.configureByFiles("FiveMatches.java");
+        PsiFile psiTestFile = myFixture.getFile();
+
+        // WHEN the markers are counted from the lexer's comment tokens
+        MarkerCounts markerCounts = CommentScanner.countMarkers(myFixture.getProject(), psiTestFile.getVirtualFile());
+
+        // Then the result should be five todos
+        assertEquals(5, markerCounts.getCount("TODO"));
+    }
+
+    public void testCountMarkers_TodoInStringLiteral() throws Exception {
+
+        // GIVEN a test java class with TODO only in a string literal
+        myFixture.configureByFiles("TodoInStringLiteral.java");
+        PsiFile psiTestFile = myFixture.getFile();
+
+        // WHEN the markers are counted from the lexer's comment tokens
+        MarkerCounts markerCounts = CommentScanner.countMarkers(myFixture.getProject(), psiTestFile.getVirtualFile());
+
+        // Then nothing should be counted
+        assertEquals(0, markerCounts.getTotal());
+    }
+
+    public void testCountMarkers_XmlComments() throws Exception {
+
+        // GIVEN an xml file with a todo and a fixme comment, and TODO in text
+        myFixture.configureByFiles("MarkersInXmlComments.xml");
+        PsiFile psiTestFile = myFixture.getFile();
+
+        // WHEN the markers are counted from the lexer's comment tokens
+        MarkerCounts markerCounts = CommentScanner.countMarkers(myFixture.getProject(), psiTestFile.getVirtualFile());
+
+        // Then only the comments should be counted
+        assertEquals(1, markerCounts.getCount("TODO"));
+        assertEquals(1, markerCounts.getCount("FIXME"));
+    }
+}
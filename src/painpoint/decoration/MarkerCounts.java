@@ -0,0 +1,99 @@
+package painpoint.decoration;
+
+/**
+ * How many of each comment marker a file has, from a {@link MarkerScanner}.
+ */
+public final class MarkerCounts {
+
+    private final MarkerScanner mScanner;
+    private final int[] mCounts;
+    private final int mTotal;
+
+    /**
+     * @param scanner the scanner that counted.
+     * @param counts  count per marker of the scanner, not copied.
+     */
+    public MarkerCounts(MarkerScanner scanner, int[] counts) {
+        mScanner = scanner;
+        mCounts = counts;
+        mTotal = sum(counts);
+    }
+
+    /**
+     * No markers, for a file nothing could count.
+     */
+    public static MarkerCounts none() {
+        MarkerScanner scanner = MarkerScanner.getDefault();
+        return new MarkerCounts(scanner, new int[scanner.getMarkerCount()]);
+    }
+
+    public int getTotal() {
+        return mTotal;
+    }
+
+    /**
+     * @return the total with each marker's weight.
+     */
+    public int getWeightedTotal() {
+        int weightedTotal = 0;
+        for (int i = 0; i < mCounts.length; i++) {
+            weightedTotal += mCounts[i] * mScanner.getWeight(i);
+        }
+        return weightedTotal;
+    }
+
+    /**
+     * @return the count for a marker, 0 if it isn't one of the scanner's.
+     */
+    public int getCount(String marker) {
+        for (int i = 0; i < mCounts.length; i++) {
+            if (mScanner.getMarker(i).equalsIgnoreCase(marker)) {
+                return mCounts[i];
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Add or take away other counts from the same scanner.
+     *
+     * @param other counts to add.
+     * @param sign  1 to add, -1 to take away.
+     * @return new counts, none below 0.
+     */
+    public MarkerCounts plus(MarkerCounts other, int sign) {
+        if (mScanner != other.mScanner) {
+            throw new IllegalArgumentException("Counts from different scanners");
+        }
+        int[] counts = new int[mCounts.length];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = Math.max(0, mCounts[i] + sign * other.mCounts[i]);
+        }
+        return new MarkerCounts(mScanner, counts);
+    }
+
+    /**
+     * @return ex. "TODO 3, FIXME 1", markers with no count left out.
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < mCounts.length; i++) {
+            if (mCounts[i] > 0) {
+                if (builder.length() > 0) {
+                    builder.append(", ");
+                }
+                builder.append(mScanner.getMarker(i)).append(' ').append(mCounts[i]);
+            }
+        }
+        return builder.toString();
+    }
+
+    private static int sum(int[] counts) {
+        int total = 0;
+        for (int count : counts) {
+            total += count;
+        }
+        return total;
+    }
+}
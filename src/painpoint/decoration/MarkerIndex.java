@@ -0,0 +1,126 @@
+package painpoint.decoration;
+
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.IndexNotReadyException;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.util.indexing.DataIndexer;
+import com.intellij.util.indexing.FileBasedIndex;
+import com.intellij.util.indexing.FileBasedIndexExtension;
+import com.intellij.util.indexing.FileContent;
+import com.intellij.util.indexing.ID;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.DataInputOutputUtil;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.KeyDescriptor;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Persistent index of each file's comment marker counts, keyed by marker, ex. "FIXME" to 2.
+ * The platform indexes a file when its content changes and keeps the index across restarts and branch switches,
+ * so counts are only scanned for content it hasn't seen.
+ */
+public class MarkerIndex extends FileBasedIndexExtension<String, Integer> {
+
+    public static final ID<String, Integer> NAME = ID.create("painpoint.markers");
+
+    // bump when the way files are scanned changes, the marker set is part of the version too.
+    private static final int BASE_VERSION = 1;
+
+    private static final DataExternalizer<Integer> COUNT_EXTERNALIZER = new DataExternalizer<Integer>() {
+        @Override
+        public void save(DataOutput out, Integer value) throws IOException {
+            DataInputOutputUtil.writeINT(out, value);
+        }
+
+        @Override
+        public Integer read(DataInput in) throws IOException {
+            return DataInputOutputUtil.readINT(in);
+        }
+    };
+
+    @Override
+    public ID<String, Integer> getName() {
+        return NAME;
+    }
+
+    @Override
+    public DataIndexer<String, Integer, FileContent> getIndexer() {
+        return inputData -> {
+            MarkerCounts markerCounts = CommentScanner.countMarkers(inputData.getProject(), inputData.getFileType(), inputData.getContentAsText());
+            if (markerCounts == null || markerCounts.getTotal() == 0) {
+                return Collections.emptyMap();
+            }
+            MarkerScanner scanner = MarkerScanner.getDefault();
+            Map<String, Integer> counts = new HashMap<>();
+            for (int i = 0; i < scanner.getMarkerCount(); i++) {
+                int count = markerCounts.getCount(scanner.getMarker(i));
+                if (count > 0) {
+                    counts.put(scanner.getMarker(i), count);
+                }
+            }
+            return counts;
+        };
+    }
+
+    @Override
+    public KeyDescriptor<String> getKeyDescriptor() {
+        return EnumeratorStringDescriptor.INSTANCE;
+    }
+
+    @Override
+    public DataExternalizer<Integer> getValueExternalizer() {
+        return COUNT_EXTERNALIZER;
+    }
+
+    @Override
+    public FileBasedIndex.InputFilter getInputFilter() {
+        // library sources in jars never get decorated.
+        return file -> file.isInLocalFileSystem() && CommentScanner.canScan(file);
+    }
+
+    @Override
+    public boolean dependsOnFileContent() {
+        return true;
+    }
+
+    @Override
+    public int getVersion() {
+        return BASE_VERSION * 31 + System.getProperty(MarkerScanner.MARKERS_PROPERTY, MarkerScanner.DEFAULT_MARKERS).hashCode();
+    }
+
+    /**
+     * Read a file's marker counts from the index.
+     *
+     * @return the counts, or null while the index isn't ready.
+     */
+    public static MarkerCounts getMarkerCounts(Project project, VirtualFile virtualFile) {
+        if (DumbService.isDumb(project)) {
+            return null;
+        }
+        MarkerScanner scanner = MarkerScanner.getDefault();
+        int[] counts = new int[scanner.getMarkerCount()];
+        GlobalSearchScope fileScope = GlobalSearchScope.fileScope(project, virtualFile);
+        FileBasedIndex fileBasedIndex = FileBasedIndex.getInstance();
+        try {
+            for (int i = 0; i < counts.length; i++) {
+                final int marker = i;
+                fileBasedIndex.processValues(NAME, scanner.getMarker(i), virtualFile, (file, count) -> {
+                    counts[marker] += count;
+                    return true;
+                }, fileScope);
+            }
+        }
+        catch (IndexNotReadyException ex) {
+            return null;
+        }
+        return new MarkerCounts(scanner, counts);
+    }
+}
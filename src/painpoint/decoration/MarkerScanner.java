@@ -0,0 +1,234 @@
+package painpoint.decoration;
+
+import com.intellij.ide.plugins.PluginManager;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Counts comment markers like TODO and FIXME in text, all markers in one pass.
+ * The markers are compiled into one case-insensitive automaton, so each character is looked at once whatever the
+ * number of markers, and nothing is copied out of the text.
+ * A marker counts when it is a whole word, and once per line, the way the TODO index counts.
+ */
+public final class MarkerScanner {
+
+    public static final String MARKERS_PROPERTY = "painpoint.markers";
+    public static final String DEFAULT_MARKERS = "TODO:1,FIXME:2,HACK:2,XXX:1";
+
+    // markers found on a line are kept in a long.
+    private static final int MAX_MARKERS = 64;
+    private static final int ROOT = 0;
+
+    private static volatile MarkerScanner sDefault;
+
+    private final String[] mMarkers;
+    private final int[] mWeights;
+    // ASCII char to automaton column, -1 for chars in no marker.
+    private final int[] mColumns = new int[128];
+    // state and column to next state.
+    private final int[][] mNext;
+    // markers that end at each state, as bits.
+    private final long[] mOutput;
+
+    /**
+     * @param markers marker words, letters, digits and '_' only.
+     * @param weights how much each marker weighs in {@link MarkerCounts#getWeightedTotal()}.
+     */
+    public MarkerScanner(String[] markers, int[] weights) {
+        if (markers.length == 0 || markers.length > MAX_MARKERS || markers.length != weights.length) {
+            throw new IllegalArgumentException("Between 1 and " + MAX_MARKERS + " markers, each with a weight");
+        }
+        mMarkers = markers.clone();
+        mWeights = weights.clone();
+
+        Arrays.fill(mColumns, -1);
+        int columnCount = 0;
+        for (String marker : mMarkers) {
+            if (marker.isEmpty()) {
+                throw new IllegalArgumentException("Empty marker");
+            }
+            for (int i = 0; i < marker.length(); i++) {
+                char c = Character.toLowerCase(marker.charAt(i));
+                if (c >= 128 || !isWordChar(c)) {
+                    throw new IllegalArgumentException("Marker " + marker + " must be ASCII letters, digits or '_'");
+                }
+                if (mColumns[c] < 0) {
+                    mColumns[c] = columnCount;
+                    mColumns[Character.toUpperCase(c)] = columnCount;
+                    columnCount++;
+                }
+            }
+        }
+
+        // trie of the markers, missing transitions are -1 until the failure links fill them in.
+        List<int[]> next = new ArrayList<>();
+        List<Long> output = new ArrayList<>();
+        next.add(newRow(columnCount));
+        output.add(0L);
+        for (int m = 0; m < mMarkers.length; m++) {
+            int state = ROOT;
+            for (int i = 0; i < mMarkers[m].length(); i++) {
+                int column = mColumns[mMarkers[m].charAt(i)];
+                if (next.get(state)[column] < 0) {
+                    next.get(state)[column] = next.size();
+                    next.add(newRow(columnCount));
+                    output.add(0L);
+                }
+                state = next.get(state)[column];
+            }
+            output.set(state, output.get(state) | 1L << m);
+        }
+
+        // breadth first, every state takes the transitions and outputs of its longest proper suffix state.
+        int[] fail = new int[next.size()];
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int column = 0; column < columnCount; column++) {
+            int child = next.get(ROOT)[column];
+            if (child < 0) {
+                next.get(ROOT)[column] = ROOT;
+            }
+            else {
+                fail[child] = ROOT;
+                queue.add(child);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            output.set(state, output.get(state) | output.get(fail[state]));
+            for (int column = 0; column < columnCount; column++) {
+                int child = next.get(state)[column];
+                if (child < 0) {
+                    next.get(state)[column] = next.get(fail[state])[column];
+                }
+                else {
+                    fail[child] = next.get(fail[state])[column];
+                    queue.add(child);
+                }
+            }
+        }
+
+        mNext = next.toArray(new int[next.size()][]);
+        mOutput = new long[output.size()];
+        for (int state = 0; state < mOutput.length; state++) {
+            mOutput[state] = output.get(state);
+        }
+    }
+
+    /**
+     * The scanner for the markers in the {@value #MARKERS_PROPERTY} system property,
+     * {@value #DEFAULT_MARKERS} if it isn't set or can't be read.
+     */
+    public static MarkerScanner getDefault() {
+        MarkerScanner scanner = sDefault;
+        if (scanner == null) {
+            scanner = fromSpecOrDefault(System.getProperty(MARKERS_PROPERTY, DEFAULT_MARKERS));
+            sDefault = scanner;
+        }
+        return scanner;
+    }
+
+    // a bad property must not take every decoration down with it.
+    static MarkerScanner fromSpecOrDefault(String spec) {
+        try {
+            return fromSpec(spec);
+        }
+        catch (IllegalArgumentException ex) {
+            // NumberFormatException too, for a weight that isn't a number.
+            PluginManager.getLogger().warn("MarkerScanner ignoring " + MARKERS_PROPERTY + "=" + spec + ": " + ex.getMessage());
+            return fromSpec(DEFAULT_MARKERS);
+        }
+    }
+
+    /**
+     * Build a scanner from a marker list like "TODO:1,FIXME:2", a marker without a weight weighs 1.
+     */
+    public static MarkerScanner fromSpec(String spec) {
+        List<String> markers = new ArrayList<>();
+        List<Integer> weights = new ArrayList<>();
+        for (String item : spec.split(",")) {
+            String trimmed = item.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            int colon = trimmed.indexOf(':');
+            markers.add(colon < 0 ? trimmed : trimmed.substring(0, colon).trim());
+            weights.add(colon < 0 ? 1 : Integer.parseInt(trimmed.substring(colon + 1).trim()));
+        }
+        int[] weightArray = new int[weights.size()];
+        for (int i = 0; i < weightArray.length; i++) {
+            weightArray[i] = weights.get(i);
+        }
+        return new MarkerScanner(markers.toArray(new String[markers.size()]), weightArray);
+    }
+
+    public int getMarkerCount() {
+        return mMarkers.length;
+    }
+
+    public String getMarker(int index) {
+        return mMarkers[index];
+    }
+
+    public int getWeight(int index) {
+        return mWeights[index];
+    }
+
+    /**
+     * Count the markers in a range of text, adding to the counts.
+     *
+     * @param text   text to scan.
+     * @param start  first char to scan, treated as the start of a word.
+     * @param end    end of the range, exclusive.
+     * @param counts count per marker, in the order of {@link #getMarker(int)}.
+     */
+    public void scan(CharSequence text, int start, int end, int[] counts) {
+        int state = ROOT;
+        long countedOnLine = 0;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == '\n') {
+                state = ROOT;
+                countedOnLine = 0;
+                continue;
+            }
+            int column = c < 128 ? mColumns[c] : -1;
+            state = column < 0 ? ROOT : mNext[state][column];
+            long found = mOutput[state] & ~countedOnLine;
+            if (found == 0 || (i + 1 < end && isWordChar(text.charAt(i + 1)))) {
+                continue;
+            }
+            while (found != 0) {
+                int marker = Long.numberOfTrailingZeros(found);
+                found &= found - 1;
+                int markerStart = i - mMarkers[marker].length() + 1;
+                if (markerStart == start || !isWordChar(text.charAt(markerStart - 1))) {
+                    counts[marker]++;
+                    countedOnLine |= 1L << marker;
+                }
+            }
+        }
+    }
+
+    /**
+     * Count the markers in all of the text.
+     */
+    public MarkerCounts count(CharSequence text) {
+        int[] counts = new int[mMarkers.length];
+        scan(text, 0, text.length(), counts);
+        return new MarkerCounts(this, counts);
+    }
+
+    private static int[] newRow(int columnCount) {
+        int[] row = new int[columnCount];
+        Arrays.fill(row, -1);
+        return row;
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+}
@@ -0,0 +1,90 @@
+package painpoint.decoration;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MarkerScannerTest {
+
+    @Test
+    public void testCount_allMarkersInOnePass() throws Exception {
+
+        // GIVEN the default markers and comment text in mixed case.
+        MarkerScanner scanner = MarkerScanner.fromSpec(MarkerScanner.DEFAULT_MARKERS);
+        String text = "// todo: one\n/* FixMe two\n * HACK and XXX */\n// TODO again";
+
+        // WHEN the text is scanned.
+        MarkerCounts counts = scanner.count(text);
+
+        // THEN each marker is counted on its own, and weighted by its weight.
+        assertEquals(2, counts.getCount("TODO"));
+        assertEquals(1, counts.getCount("FIXME"));
+        assertEquals(1, counts.getCount("HACK"));
+        assertEquals(1, counts.getCount("XXX"));
+        assertEquals(5, counts.getTotal());
+        assertEquals(2 * 1 + 1 * 2 + 1 * 2 + 1 * 1, counts.getWeightedTotal());
+    }
+
+    @Test
+    public void testCount_wholeWordsOncePerLine() throws Exception {
+
+        // GIVEN markers inside words, repeated on a line, and overlapping.
+        MarkerScanner scanner = MarkerScanner.fromSpec("TODO,XXX,XX");
+        String text = "methodWithTODOInTheName todos TODO_x\nTODO TODO todo\nXXXX XXX";
+
+        // WHEN the text is scanned.
+        MarkerCounts counts = scanner.count(text);
+
+        // THEN only whole words count, once per line each.
+        assertEquals(1, counts.getCount("TODO"));
+        assertEquals(1, counts.getCount("XXX"));
+        assertEquals(0, counts.getCount("XX"));
+    }
+
+    @Test
+    public void testScan_range() throws Exception {
+
+        // GIVEN text where only a range is a comment.
+        MarkerScanner scanner = MarkerScanner.fromSpec("TODO");
+        String text = "String s = \"TODO\"; // TODO real";
+        int[] counts = new int[1];
+
+        // WHEN only the comment's range is scanned.
+        scanner.scan(text, text.indexOf("//"), text.length(), counts);
+
+        // THEN the string's marker isn't counted.
+        assertEquals(1, counts[0]);
+    }
+
+    @Test
+    public void testPlus_takesAwayAndAdds() throws Exception {
+
+        // GIVEN counts for a file and for the comment an edit replaced.
+        MarkerScanner scanner = MarkerScanner.fromSpec("TODO,FIXME");
+        MarkerCounts file = scanner.count("// TODO\n// FIXME\n// TODO");
+        MarkerCounts oldComment = scanner.count("// TODO");
+        MarkerCounts newComment = scanner.count("// FIXME");
+
+        // WHEN the old comment is taken away and the new one added.
+        MarkerCounts counts = file.plus(oldComment, -1).plus(newComment, 1);
+
+        // THEN the counts match the edited file.
+        assertEquals(1, counts.getCount("TODO"));
+        assertEquals(2, counts.getCount("FIXME"));
+        assertEquals("TODO 1, FIXME 2", counts.toString());
+    }
+
+    @Test
+    public void testFromSpecOrDefault_malformedSpec() throws Exception {
+
+        // GIVEN a marker spec with a weight that isn't a number.
+        String spec = "NOTE:x";
+
+        // WHEN a scanner is built from it.
+        MarkerScanner scanner = MarkerScanner.fromSpecOrDefault(spec);
+
+        // THEN the default markers are used instead.
+        assertEquals(4, scanner.getMarkerCount());
+        assertEquals("TODO", scanner.getMarker(0));
+    }
+}
@@ -1,5 +1,6 @@
 package painpoint.decoration;
 
+import painpoint.domain.painpoint.model.ClassAggregate;
 import painpoint.domain.util.ClassStatus;
 import painpoint.domain.painpoint.model.PainPoint;
 import java.util.ArrayList;
@@ -8,38 +9,66 @@ import java.util.List;
 public class  PainPointPresentation {
 
     private List<PainPoint> mPainPoints;
+    private ClassAggregate mClassAggregate;
     private Integer mClassId;
     private Integer mPainPointId;
     private String mClassFileName;
     private String mGitPairName;
-    private int mTodoCount;
+    private MarkerCounts mMarkerCounts;
+    // the decorator asks for these on every paint, so they are worked out once here.
+    private final int mThumbsDownCount;
+    private final boolean mCurrentUserHasPainPoint;
 
-    public PainPointPresentation(Integer classId, Integer painPointId, String gitPairName, List<PainPoint> painPoints, String classFileName, int todoCount) {
+    public PainPointPresentation(Integer classId, Integer painPointId, String gitPairName, List<PainPoint> painPoints, String classFileName, MarkerCounts markerCounts) {
+        this(classId, painPointId, gitPairName, painPoints, null, classFileName, markerCounts);
+    }
+
+    /**
+     * Presentation for decorating a class, from its vote totals instead of every vote.
+     * {@link #currentUserHasPainPoint()} needs the votes, so it is always false here.
+     */
+    public PainPointPresentation(Integer classId, Integer painPointId, String gitPairName, ClassAggregate classAggregate, String classFileName, MarkerCounts markerCounts) {
+        this(classId, painPointId, gitPairName, new ArrayList<PainPoint>(), classAggregate, classFileName, markerCounts);
+    }
+
+    private PainPointPresentation(Integer classId, Integer painPointId, String gitPairName, List<PainPoint> painPoints,
+                                  ClassAggregate classAggregate, String classFileName, MarkerCounts markerCounts) {
         mPainPoints = painPoints;
+        mClassAggregate = classAggregate;
         mClassId = classId;
         mPainPointId = painPointId;
         mClassFileName = classFileName;
         mGitPairName = gitPairName;
-        mTodoCount = todoCount;
-    }
-
-    private int getThumbsDownCount() {
-        int count = 0;
-        for(PainPoint painPoint :  mPainPoints) {
-            if(painPoint.isThumbsDown()) {
-                count++;
+        mMarkerCounts = markerCounts;
+
+        int thumbsDownCount = 0;
+        boolean currentUserHasPainPoint = false;
+        if (painPoints != null) {
+            for (PainPoint painPoint : painPoints) {
+                if (painPoint.isThumbsDown()) {
+                    thumbsDownCount++;
+                    if (painPoint.getId().equals(painPointId)) {
+                        currentUserHasPainPoint = true;
+                    }
+                }
             }
         }
-        return count;
+        mThumbsDownCount = classAggregate != null ? classAggregate.getThumbsDownCount() : thumbsDownCount;
+        mCurrentUserHasPainPoint = currentUserHasPainPoint;
+    }
+
+    /**
+     * @return a copy of this presentation with other marker counts.
+     */
+    public PainPointPresentation withMarkerCounts(MarkerCounts markerCounts) {
+        return new PainPointPresentation(mClassId, mPainPointId, mGitPairName, mPainPoints, mClassAggregate, mClassFileName, markerCounts);
     }
 
     public ClassStatus getClassStatus() {
 
         ClassStatus classStatus = ClassStatus.UNRATED;
         if(mPainPoints != null) {
-            int painPointCount = getThumbsDownCount();
-
-            if(painPointCount >= 1) {
+            if(mThumbsDownCount >= 1) {
                 classStatus = ClassStatus.PAINPOINT;
             }
             else {
@@ -50,7 +79,7 @@ public class  PainPointPresentation {
     }
 
     public int getPinnedCount() {
-        return getThumbsDownList().size();
+        return mThumbsDownCount;
     }
 
     public List<PainPoint> getThumbsDownList() {
@@ -64,17 +93,11 @@ public class  PainPointPresentation {
     }
 
     public boolean hasPainPoints() {
-        return (mPainPoints != null && getThumbsDownList().size()>0);
+        return (mPainPoints != null && mThumbsDownCount>0);
     }
 
     public boolean currentUserHasPainPoint() {
-        List<PainPoint> painPoints = getThumbsDownList();
-        for(PainPoint painPoint : painPoints) {
-            if(painPoint.isThumbsDown() && painPoint.getId().equals(getPainPointId())) {
-                return true;
-            }
-        }
-        return false;
+        return mCurrentUserHasPainPoint;
     }
 
     public Integer getClassId() {
@@ -93,11 +116,21 @@ public class  PainPointPresentation {
         return mClassFileName;
     }
 
+    /**
+     * @return the count of all comment markers, TODO, FIXME and the rest.
+     */
     public int getTodoCount() {
-        return mTodoCount;
+        return mMarkerCounts.getTotal();
+    }
+
+    /**
+     * @return the count of each comment marker.
+     */
+    public MarkerCounts getMarkerCounts() {
+        return mMarkerCounts;
     }
 
     public boolean hasTodos() {
-        return (mTodoCount>0);
+        return (mMarkerCounts.getTotal()>0);
     }
 }
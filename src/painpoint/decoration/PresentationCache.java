@@ -0,0 +1,142 @@
+package painpoint.decoration;
+
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.vfs.VirtualFile;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Presentations computed for the project view, keyed by file.
+ * An entry is only used while the file's modification stamp and the store's stamp for the class match the ones it was computed with.
+ */
+public class PresentationCache {
+
+    private final Map<VirtualFile, Entry> mEntries = new ConcurrentHashMap<>();
+    // which file each decorated class is in, kept after its entry is invalidated so the node can still be found.
+    private final Map<Integer, VirtualFile> mClassFiles = new ConcurrentHashMap<>();
+
+    /**
+     * Get the cached presentation for a file if it is still current.
+     *
+     * @param virtualFile file the presentation was computed for.
+     * @param storeStamp  the store's current stamp for the file's class.
+     * @return presentation, or null if there is none or it is out of date.
+     *         An out of date one is kept for {@link #peek(VirtualFile)} until a new one is put.
+     */
+    public PainPointPresentation get(VirtualFile virtualFile, long storeStamp) {
+        Entry entry = mEntries.get(virtualFile);
+        if (entry == null || entry.mFileStamp != getFileStamp(virtualFile) || entry.mStoreStamp != storeStamp) {
+            return null;
+        }
+        return entry.mPresentation;
+    }
+
+    /**
+     * Get the cached presentation for a file without checking whether it is current,
+     * the stale one is painted while a new one is resolved.
+     *
+     * @param virtualFile file the presentation was computed for.
+     * @return presentation or null.
+     */
+    public PainPointPresentation peek(VirtualFile virtualFile) {
+        Entry entry = mEntries.get(virtualFile);
+        return entry != null ? entry.mPresentation : null;
+    }
+
+    /**
+     * Cache a presentation.
+     *
+     * @param virtualFile  file the presentation was computed for.
+     * @param presentation the presentation.
+     * @param fileStamp    file modification stamp read before the presentation was computed, see {@link #getFileStamp(VirtualFile)}.
+     * @param storeStamp   store stamp for the class read before the presentation was computed.
+     */
+    public void put(VirtualFile virtualFile, PainPointPresentation presentation, long fileStamp, long storeStamp) {
+        mEntries.put(virtualFile, new Entry(presentation, fileStamp, storeStamp));
+        if (presentation.getClassId() != null) {
+            mClassFiles.put(presentation.getClassId(), virtualFile);
+        }
+    }
+
+    /**
+     * Find the files of classes that were decorated, classes that never were have no node to update.
+     *
+     * @param classIds classes to look for.
+     * @return the files that are still valid.
+     */
+    public List<VirtualFile> getFilesForClassIds(Collection<Integer> classIds) {
+        List<VirtualFile> virtualFiles = new ArrayList<>();
+        for (Integer classId : classIds) {
+            VirtualFile virtualFile = mClassFiles.get(classId);
+            if (virtualFile == null) {
+                continue;
+            }
+            if (virtualFile.isValid()) {
+                virtualFiles.add(virtualFile);
+            }
+            else {
+                mClassFiles.remove(classId, virtualFile);
+            }
+        }
+        return virtualFiles;
+    }
+
+    /**
+     * Update the marker counts of a file's presentation in place after an edit, keeping its store stamp.
+     *
+     * @param virtualFile  file that was edited.
+     * @param markerCounts the file's marker counts now.
+     * @return the updated presentation if the total changed, otherwise null.
+     */
+    public PainPointPresentation updateMarkerCounts(VirtualFile virtualFile, MarkerCounts markerCounts) {
+        Entry entry = mEntries.get(virtualFile);
+        if (entry == null) {
+            return null;
+        }
+        // the tree only shows the total, so only a new total needs a repaint.
+        boolean changed = entry.mPresentation.getTodoCount() != markerCounts.getTotal();
+        PainPointPresentation presentation = entry.mPresentation.getMarkerCounts() != markerCounts
+                ? entry.mPresentation.withMarkerCounts(markerCounts) : entry.mPresentation;
+        mEntries.replace(virtualFile, entry, new Entry(presentation, getFileStamp(virtualFile), entry.mStoreStamp));
+        return changed ? presentation : null;
+    }
+
+    public void invalidate(VirtualFile virtualFile) {
+        mEntries.remove(virtualFile);
+    }
+
+    public void invalidateAll() {
+        mEntries.clear();
+    }
+
+    /**
+     * The modification stamp of the file's text, including unsaved edits.
+     *
+     * @param virtualFile file to check.
+     * @return the document's stamp if the file is open in a document, otherwise the file's.
+     */
+    public static long getFileStamp(VirtualFile virtualFile) {
+        Document document = FileDocumentManager.getInstance().getCachedDocument(virtualFile);
+        if (document != null) {
+            return document.getModificationStamp();
+        }
+        return virtualFile.getModificationStamp();
+    }
+
+    private static class Entry {
+        private final PainPointPresentation mPresentation;
+        private final long mFileStamp;
+        private final long mStoreStamp;
+
+        Entry(PainPointPresentation presentation, long fileStamp, long storeStamp) {
+            mPresentation = presentation;
+            mFileStamp = fileStamp;
+            mStoreStamp = storeStamp;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package painpoint.decoration;
+
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.testFramework.fixtures.LightCodeInsightFixtureTestCase;
+import painpoint.domain.painpoint.model.ClassAggregate;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class PresentationCacheTest extends LightCodeInsightFixtureTestCase {
+
+    @Override
+    protected String getTestDataPath() {
+        return "testData";
+    }
+
+    public void testGet_staleEntryKeptForPeek() throws Exception {
+
+        // GIVEN a presentation cached for a file at store stamp 1
+        myFixture.configureByFiles("FiveMatches.java");
+        VirtualFile virtualFile = myFixture.getFile().getVirtualFile();
+        PresentationCache presentationCache = new PresentationCache();
+        PainPointPresentation presentation = new PainPointPresentation(1, 2, "user", ClassAggregate.empty(1), "FiveMatches.java", MarkerCounts.none());
+        presentationCache.put(virtualFile, presentation, PresentationCache.getFileStamp(virtualFile), 1);
+
+        // WHEN it is asked for after a vote moved the store stamp to 2
+        PainPointPresentation current = presentationCache.get(virtualFile, 2);
+
+        // Then it isn't current, but is still there to paint until a new one is put
+        assertNull(current);
+        assertSame(presentation, presentationCache.peek(virtualFile));
+        assertSame(presentation, presentationCache.get(virtualFile, 1));
+    }
+}
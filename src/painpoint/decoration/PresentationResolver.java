@@ -0,0 +1,135 @@
+package painpoint.decoration;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.vfs.VirtualFile;
+import painpoint.component.PainPointStoreComponent;
+import painpoint.component.ProjectViewManager;
+import painpoint.dialog.PainPointPresentationFactory;
+import painpoint.domain.painpoint.PainPointDomain;
+import painpoint.domain.painpoint.model.ClassAggregate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Computes the presentations the project view asked for but didn't find in the PresentationCache, off the EDT.
+ * Files requested while painting are collected and resolved together on a pooled thread, with one store lookup
+ * per batch, then only their nodes are repainted.
+ */
+public class PresentationResolver {
+
+    // most files resolved together, bounds the size of one lookup.
+    private static final int MAX_BATCH = 500;
+
+    private final Project mProject;
+    private final PresentationCache mPresentationCache;
+    private final Consumer<Collection<Integer>> mClassesResolved;
+    private final Set<VirtualFile> mPending = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean mResolveQueued = new AtomicBoolean();
+
+    /**
+     * @param classesResolved called with the class ids of each resolved batch, to repaint their nodes.
+     */
+    public PresentationResolver(Project project, PresentationCache presentationCache, Consumer<Collection<Integer>> classesResolved) {
+        mProject = project;
+        mPresentationCache = presentationCache;
+        mClassesResolved = classesResolved;
+    }
+
+    /**
+     * Queue a file whose presentation is missing or stale, requests close together are resolved in one pass.
+     */
+    public void request(VirtualFile virtualFile) {
+        mPending.add(virtualFile);
+        if (mResolveQueued.compareAndSet(false, true)) {
+            ApplicationManager.getApplication().executeOnPooledThread(this::resolvePending);
+        }
+    }
+
+    private void resolvePending() {
+        mResolveQueued.set(false);
+        while (!mPending.isEmpty() && !mProject.isDisposed()) {
+            List<VirtualFile> batch = new ArrayList<>();
+            Iterator<VirtualFile> iterator = mPending.iterator();
+            while (iterator.hasNext() && batch.size() < MAX_BATCH) {
+                batch.add(iterator.next());
+                iterator.remove();
+            }
+            List<Integer> classIds = resolve(batch);
+            if (!classIds.isEmpty()) {
+                mClassesResolved.accept(classIds);
+            }
+        }
+    }
+
+    /**
+     * Compute and cache the presentations of files, with one store lookup for all of them.
+     *
+     * @return the class ids of the files, to repaint their nodes.
+     */
+    public List<Integer> resolve(List<VirtualFile> virtualFiles) {
+        ProjectViewManager projectViewManager = ProjectViewManager.getInstance(mProject);
+        PainPointDomain painPointDomain = projectViewManager.getPainPointDomain();
+        List<ClassFileSnapshot> snapshots = new ArrayList<>();
+        List<Integer> classIds = new ArrayList<>();
+        for (VirtualFile virtualFile : virtualFiles) {
+            ClassFileSnapshot snapshot = readSnapshot(projectViewManager, virtualFile);
+            if (snapshot == null) {
+                continue;
+            }
+            // a file with no class id is cached without votes, so it isn't asked for again.
+            if (snapshot.mClassId != null) {
+                // stamps are read before computing, so a change made while computing invalidates the entry.
+                snapshot.mStoreStamp = painPointDomain.getClassStamp(snapshot.mClassId);
+                classIds.add(snapshot.mClassId);
+            }
+            snapshots.add(snapshot);
+        }
+        Map<Integer, ClassAggregate> classAggregates = classIds.isEmpty() ? Collections.emptyMap()
+                : PainPointStoreComponent.getInstance().runBackgroundLookup(() -> painPointDomain.getAggregatesForClassIds(classIds));
+        String gitUsername = PainPointPresentationFactory.getGitUsername(mProject);
+        for (ClassFileSnapshot snapshot : snapshots) {
+            PainPointPresentation presentation = PainPointPresentationFactory.creatPresentation(snapshot.mClassId, gitUsername,
+                    classAggregates.get(snapshot.mClassId), snapshot.mVirtualFile.getName(), snapshot.mMarkerCounts);
+            mPresentationCache.put(snapshot.mVirtualFile, presentation, snapshot.mFileStamp, snapshot.mStoreStamp);
+        }
+        return classIds;
+    }
+
+    // what the decorator would read for the file's node, read in one short read action without building PSI.
+    private ClassFileSnapshot readSnapshot(ProjectViewManager projectViewManager, VirtualFile virtualFile) {
+        return ApplicationManager.getApplication().runReadAction((Computable<ClassFileSnapshot>) () -> {
+            if (mProject.isDisposed() || !virtualFile.isValid()) {
+                return null;
+            }
+            long fileStamp = PresentationCache.getFileStamp(virtualFile);
+            Integer classId = projectViewManager.getClassIdCache().getClassId(virtualFile);
+            return new ClassFileSnapshot(virtualFile, classId, PainPointPresentationFactory.getMarkerCounts(mProject, virtualFile), fileStamp);
+        });
+    }
+
+    private static class ClassFileSnapshot {
+        private final VirtualFile mVirtualFile;
+        private final Integer mClassId;
+        private final MarkerCounts mMarkerCounts;
+        private final long mFileStamp;
+        private long mStoreStamp;
+
+        ClassFileSnapshot(VirtualFile virtualFile, Integer classId, MarkerCounts markerCounts, long fileStamp) {
+            mVirtualFile = virtualFile;
+            mClassId = classId;
+            mMarkerCounts = markerCounts;
+            mFileStamp = fileStamp;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package painpoint.decoration;
+
+import com.intellij.ide.plugins.PluginManager;
+import com.intellij.ide.projectView.ProjectView;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectFileIndex;
+import com.intellij.openapi.roots.ProjectRootManager;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+import painpoint.component.ProjectViewManager;
+import painpoint.domain.painpoint.PainPointDomain;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fills the project's PresentationCache for every file with comments to count in the background when the project opens,
+ * then refreshes the project view once, so expanding a package finds its decorations ready.
+ * Files are read in short read actions, the store lookups happen outside them on a small worker pool, a batch of files at a time.
+ */
+public class PresentationWarmUp extends Task.Backgroundable {
+
+    // threads reading files, their store lookups take turns with every other project's, see PainPointStoreComponent.
+    private static final int MAX_WORKERS = 3;
+    // files whose vote totals are looked up together.
+    private static final int BATCH_SIZE = 100;
+
+    private final Project mProject;
+
+    public PresentationWarmUp(@NotNull Project project) {
+        super(project, "Loading pain points", true);
+        mProject = project;
+    }
+
+    @Override
+    public void run(@NotNull ProgressIndicator indicator) {
+        ProjectViewManager projectViewManager = ProjectViewManager.getInstance(mProject);
+        PainPointDomain painPointDomain = projectViewManager.getPainPointDomain();
+
+        indicator.setIndeterminate(true);
+        indicator.setText("Loading pain points");
+        try {
+            painPointDomain.getPainPointMap(true);
+        }
+        catch (SQLException sqlEx) {
+            PluginManager.getLogger().warn("PresentationWarmUp couldn't load pain points: " + sqlEx.getMessage());
+        }
+
+        indicator.setText("Finding source files");
+        List<VirtualFile> sourceFiles = findSourceFiles(indicator);
+        if (indicator.isCanceled()) {
+            return;
+        }
+
+        indicator.setIndeterminate(false);
+        indicator.setText("Decorating classes");
+        PresentationCache presentationCache = projectViewManager.getPresentationCache();
+        PresentationResolver presentationResolver = projectViewManager.getPresentationResolver();
+        AtomicInteger done = new AtomicInteger();
+        int workers = Math.max(1, Math.min(MAX_WORKERS, Runtime.getRuntime().availableProcessors() - 1));
+        ExecutorService executor = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "PainPoint warm-up");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int start = 0; start < sourceFiles.size(); start += BATCH_SIZE) {
+                List<VirtualFile> batch = sourceFiles.subList(start, Math.min(start + BATCH_SIZE, sourceFiles.size()));
+                futures.add(executor.submit(() -> {
+                    if (!indicator.isCanceled()) {
+                        warmUp(batch, presentationCache, presentationResolver);
+                        indicator.setFraction((double) done.addAndGet(batch.size()) / sourceFiles.size());
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                if (indicator.isCanceled()) {
+                    return;
+                }
+                try {
+                    future.get();
+                }
+                catch (ExecutionException ex) {
+                    PluginManager.getLogger().warn("PresentationWarmUp failed for a file: " + ex.getCause());
+                }
+            }
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        finally {
+            executor.shutdownNow();
+            try {
+                executor.awaitTermination(1, TimeUnit.SECONDS);
+            }
+            catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public void onSuccess() {
+        if (!mProject.isDisposed()) {
+            ProjectView.getInstance(mProject).refresh();
+        }
+    }
+
+    private List<VirtualFile> findSourceFiles(ProgressIndicator indicator) {
+        List<VirtualFile> sourceFiles = new ArrayList<>();
+        ApplicationManager.getApplication().runReadAction(() -> {
+            ProjectFileIndex fileIndex = ProjectRootManager.getInstance(mProject).getFileIndex();
+            fileIndex.iterateContent(fileOrDir -> {
+                // Java and Kotlin sources, and XML and Gradle files too, any language the comment scanner can lex.
+                if (!fileOrDir.isDirectory() && CommentScanner.canScan(fileOrDir)) {
+                    sourceFiles.add(fileOrDir);
+                }
+                return !indicator.isCanceled();
+            });
+        });
+        return sourceFiles;
+    }
+
+    private void warmUp(List<VirtualFile> virtualFiles, PresentationCache presentationCache, PresentationResolver presentationResolver) {
+        List<VirtualFile> missing = new ArrayList<>();
+        for (VirtualFile virtualFile : virtualFiles) {
+            // the tree already decorated it.
+            if (presentationCache.peek(virtualFile) == null) {
+                missing.add(virtualFile);
+            }
+        }
+        if (!missing.isEmpty()) {
+            presentationResolver.resolve(missing);
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package painpoint.decoration;
+
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiComment;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiRecursiveElementWalkingVisitor;
+import com.intellij.psi.PsiTreeChangeAdapter;
+import com.intellij.psi.PsiTreeChangeEvent;
+import com.intellij.psi.impl.PsiTreeChangeEventImpl;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Keeps running marker counts for the files being edited, from PSI change events.
+ * Before a change the markers of the subtree about to change are taken off the file's counts, after it the markers of
+ * the new subtree are added, so an edit only rescans the comments it touched.
+ * A file's counts start with one walk of the file the first time it changes.
+ * Comments are counted with {@link MarkerScanner#getDefault()}.
+ */
+public class TodoTracker extends PsiTreeChangeAdapter {
+
+    private final Map<VirtualFile, MarkerCounts> mTotals = new ConcurrentHashMap<>();
+    private final PresentationCache mPresentationCache;
+    private final Consumer<Collection<Integer>> mClassesChanged;
+
+    /**
+     * @param presentationCache presentations to keep up to date with the new counts.
+     * @param classesChanged    told the classes whose TODO count changed, ex. to repaint their nodes.
+     */
+    public TodoTracker(PresentationCache presentationCache, Consumer<Collection<Integer>> classesChanged) {
+        mPresentationCache = presentationCache;
+        mClassesChanged = classesChanged;
+    }
+
+    /**
+     * @return the running marker counts of a file that was edited this session, or null if it isn't tracked.
+     */
+    public MarkerCounts getMarkerCounts(VirtualFile virtualFile) {
+        return mTotals.get(virtualFile);
+    }
+
+    @Override
+    public void beforeChildAddition(PsiTreeChangeEvent event) {
+        startTracking(event);
+    }
+
+    @Override
+    public void childAdded(PsiTreeChangeEvent event) {
+        add(event, event.getChild(), 1);
+        publish(event);
+    }
+
+    @Override
+    public void beforeChildRemoval(PsiTreeChangeEvent event) {
+        if (startTracking(event)) {
+            add(event, event.getChild(), -1);
+        }
+    }
+
+    @Override
+    public void childRemoved(PsiTreeChangeEvent event) {
+        publish(event);
+    }
+
+    @Override
+    public void beforeChildReplacement(PsiTreeChangeEvent event) {
+        if (startTracking(event)) {
+            add(event, event.getOldChild(), -1);
+        }
+    }
+
+    @Override
+    public void childReplaced(PsiTreeChangeEvent event) {
+        add(event, event.getNewChild(), 1);
+        publish(event);
+    }
+
+    @Override
+    public void beforeChildrenChange(PsiTreeChangeEvent event) {
+        // a generic change wraps the specific events above, counting it too would count the edit twice.
+        if (!isGenericChange(event) && startTracking(event)) {
+            add(event, event.getParent(), -1);
+        }
+    }
+
+    @Override
+    public void childrenChanged(PsiTreeChangeEvent event) {
+        if (!isGenericChange(event)) {
+            add(event, event.getParent(), 1);
+            publish(event);
+        }
+    }
+
+    @Override
+    public void childMoved(PsiTreeChangeEvent event) {
+        // moves inside a file don't change its count, a move between files is rare enough to count again.
+        if (event.getFile() == null) {
+            mTotals.clear();
+        }
+    }
+
+    @Override
+    public void propertyChanged(PsiTreeChangeEvent event) {
+        // ex. the file was reloaded from disk or its language changed.
+        VirtualFile virtualFile = getTrackedFile(event.getFile());
+        if (virtualFile != null) {
+            mTotals.remove(virtualFile);
+        }
+        else {
+            mTotals.clear();
+        }
+    }
+
+    private static boolean isGenericChange(PsiTreeChangeEvent event) {
+        return event instanceof PsiTreeChangeEventImpl && ((PsiTreeChangeEventImpl) event).isGenericChange();
+    }
+
+    // called before a change, while the tree is still as it was.  Returns whether the file is tracked.
+    private boolean startTracking(PsiTreeChangeEvent event) {
+        PsiFile psiFile = event.getFile();
+        VirtualFile virtualFile = getTrackedFile(psiFile);
+        if (virtualFile == null) {
+            return false;
+        }
+        if (!mTotals.containsKey(virtualFile)) {
+            mTotals.put(virtualFile, countMarkers(psiFile));
+        }
+        return true;
+    }
+
+    private void add(PsiTreeChangeEvent event, PsiElement element, int sign) {
+        VirtualFile virtualFile = getTrackedFile(event.getFile());
+        MarkerCounts total = virtualFile != null ? mTotals.get(virtualFile) : null;
+        if (total == null || element == null) {
+            return;
+        }
+        MarkerCounts markerCounts = countMarkers(element);
+        if (markerCounts.getTotal() != 0) {
+            mTotals.put(virtualFile, total.plus(markerCounts, sign));
+        }
+    }
+
+    // after a change, update the file's presentation where it is instead of dropping it.
+    private void publish(PsiTreeChangeEvent event) {
+        VirtualFile virtualFile = getTrackedFile(event.getFile());
+        MarkerCounts total = virtualFile != null ? mTotals.get(virtualFile) : null;
+        if (total == null) {
+            return;
+        }
+        PainPointPresentation presentation = mPresentationCache.updateMarkerCounts(virtualFile, total);
+        if (presentation != null) {
+            mClassesChanged.accept(Collections.singletonList(presentation.getClassId()));
+        }
+    }
+
+    private static VirtualFile getTrackedFile(PsiFile psiFile) {
+        if (psiFile == null || !psiFile.isPhysical()) {
+            return null;
+        }
+        return psiFile.getVirtualFile();
+    }
+
+    /**
+     * Count the markers in the comments of a PSI subtree, reading the comments' chars where they are.
+     */
+    public static MarkerCounts countMarkers(PsiElement element) {
+        MarkerScanner scanner = MarkerScanner.getDefault();
+        int[] counts = new int[scanner.getMarkerCount()];
+        if (element.isValid()) {
+            element.accept(new PsiRecursiveElementWalkingVisitor() {
+                @Override
+                public void visitElement(PsiElement child) {
+                    if (child instanceof PsiComment) {
+                        scanComment(scanner, child, counts);
+                        return;
+                    }
+                    super.visitElement(child);
+                }
+            });
+        }
+        return new MarkerCounts(scanner, counts);
+    }
+
+    // doc comments are made of tokens, scan each leaf.
+    private static void scanComment(MarkerScanner scanner, PsiElement comment, int[] counts) {
+        PsiElement child = comment.getFirstChild();
+        if (child == null) {
+            CharSequence chars = comment.getNode().getChars();
+            scanner.scan(chars, 0, chars.length(), counts);
+            return;
+        }
+        for (; child != null; child = child.getNextSibling()) {
+            scanComment(scanner, child, counts);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package painpoint.decoration;
+
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiFile;
+import com.intellij.testFramework.fixtures.LightCodeInsightFixtureTestCase;
+import painpoint.component.ProjectViewManager;
+
+import static org.junit.Assert.assertEquals;
+
+public class TodoTrackerTest extends LightCodeInsightFixtureTestCase {
+
+    @Override
+    protected String getTestDataPath() {
+        return "testData";
+    }
+
+    public void testGetTodoCount_TodoCommentAdded() throws Exception {
+
+        // GIVEN a test java class with five todos
+        myFixture.configureByFiles("FiveMatches.java");
+        PsiFile psiTestFile = myFixture.getFile();
+
+        // WHEN a todo and a fixme comment are typed and committed
+        insertAndCommit("// TODO one more\n// FIXME first fixme\n");
+
+        // Then the running counts should include them, each under its marker
+        MarkerCounts markerCounts = getTracker().getMarkerCounts(psiTestFile.getVirtualFile());
+        assertEquals(6, markerCounts.getCount("TODO"));
+        assertEquals(1, markerCounts.getCount("FIXME"));
+    }
+
+    public void testGetTodoCount_TodoStringAdded() throws Exception {
+
+        // GIVEN a test java class with five todos
+        myFixture.configureByFiles("FiveMatches.java");
+        PsiFile psiTestFile = myFixture.getFile();
+
+        // WHEN a field with TODO in a string literal is typed and committed
+        insertAndCommit("class Extra { String s = \"TODO\"; }\n");
+
+        // Then the running count should be unchanged
+        int todoCount = getTracker().getMarkerCounts(psiTestFile.getVirtualFile()).getTotal();
+        assertEquals(5, todoCount);
+    }
+
+    private TodoTracker getTracker() {
+        return ProjectViewManager.getInstance(myFixture.getProject()).getTodoTracker();
+    }
+
+    private void insertAndCommit(String text) {
+        Document document = myFixture.getEditor().getDocument();
+        WriteCommandAction.runWriteCommandAction(myFixture.getProject(), () -> {
+            document.insertString(document.getTextLength(), text);
+            PsiDocumentManager.getInstance(myFixture.getProject()).commitDocument(document);
+        });
+    }
+}
@@ -0,0 +1,94 @@
+package painpoint.dialog;
+
+import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import painpoint.hotspot.Hotspot;
+import painpoint.hotspot.HotspotReport;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.List;
+
+/**
+ * The ranked files of a project scan, double click a row to open its file.
+ */
+public class HotspotDialog extends JDialog {
+
+    private static final String[] COLUMNS = {"File", "Thumbs down", "Markers", "Score"};
+
+    public HotspotDialog(Project project, HotspotReport report) {
+        super(new JFrame(), "Pain points: " + report.getThroughput());
+
+        List<Hotspot> hotspots = report.getHotspots();
+        JTable table = new JTable(new AbstractTableModel() {
+            @Override
+            public int getRowCount() {
+                return hotspots.size();
+            }
+
+            @Override
+            public int getColumnCount() {
+                return COLUMNS.length;
+            }
+
+            @Override
+            public String getColumnName(int column) {
+                return COLUMNS[column];
+            }
+
+            @Override
+            public Object getValueAt(int row, int column) {
+                Hotspot hotspot = hotspots.get(row);
+                switch (column) {
+                    case 0:
+                        return displayPath(project, hotspot.getVirtualFile());
+                    case 1:
+                        return hotspot.getThumbsDownCount();
+                    case 2:
+                        return hotspot.getMarkerCounts().toString();
+                    default:
+                        return hotspot.getScore();
+                }
+            }
+        });
+        table.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int row = table.rowAtPoint(e.getPoint());
+                if (e.getClickCount() == 2 && row >= 0) {
+                    VirtualFile virtualFile = hotspots.get(row).getVirtualFile();
+                    if (virtualFile.isValid()) {
+                        FileEditorManager.getInstance(project).openFile(virtualFile, true);
+                    }
+                }
+            }
+        });
+        getContentPane().add(new JScrollPane(table), BorderLayout.CENTER);
+
+        JPanel buttonPane = new JPanel();
+        JButton button = new JButton("Close");
+        buttonPane.add(button);
+        button.addActionListener(e -> {
+            setVisible(false);
+            dispose();
+        });
+        getContentPane().add(buttonPane, BorderLayout.PAGE_END);
+
+        setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+        setSize(700, 400);
+        setLocation(400, 400);
+        setVisible(true);
+    }
+
+    // relative to the project, the full path for files outside it.
+    private static String displayPath(Project project, VirtualFile virtualFile) {
+        VirtualFile baseDir = project.getBaseDir();
+        String relativePath = baseDir != null ? VfsUtilCore.getRelativePath(virtualFile, baseDir, '/') : null;
+        return relativePath != null ? relativePath : virtualFile.getPath();
+    }
+}
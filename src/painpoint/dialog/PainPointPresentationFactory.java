@@ -4,128 +4,169 @@ import com.intellij.ide.projectView.impl.nodes.ClassTreeNode;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.*;
-import com.intellij.psi.impl.source.tree.PsiCommentImpl;
-import org.apache.commons.lang.StringUtils;
+import painpoint.component.GitIdentityManager;
 import painpoint.component.ProjectViewManager;
 import painpoint.decoration.ClassFileIdCalulator;
+import painpoint.decoration.CommentScanner;
+import painpoint.decoration.MarkerCounts;
+import painpoint.decoration.MarkerIndex;
+import painpoint.decoration.MarkerScanner;
 import painpoint.decoration.PainPointPresentation;
+import painpoint.decoration.PresentationCache;
+import painpoint.decoration.PresentationResolver;
+import painpoint.decoration.TodoTracker;
+import painpoint.domain.painpoint.PainPointDomain;
+import painpoint.domain.painpoint.model.ClassAggregate;
 import painpoint.domain.painpoint.model.PainPoint;
 import painpoint.domain.util.DataModelUtil;
-import painpoint.git.GitRunner;
-import painpoint.pairing.PairConfig;
-import painpoint.pairing.PairController;
-
-import java.io.BufferedReader;
-import java.io.FileReader;
-import java.io.IOException;
-import java.util.ArrayList;
+
 import java.util.List;
 
 public class PainPointPresentationFactory {
 
-    public static PainPointPresentation creatPresentation(Project project, ClassTreeNode classTreeNode) {
+    /**
+     * Get the presentation for a class node from the project's presentation cache.
+     * Nothing is computed while painting, a missing or stale presentation is handed to the project's
+     * {@link PresentationResolver}, which resolves the nodes being rendered together off the EDT and repaints them.
+     *
+     * @return the current presentation, else the stale one while it is resolved, null if there is none yet.
+     */
+    public static PainPointPresentation getCachedPresentation(Project project, ClassTreeNode classTreeNode) {
+
+        VirtualFile virtualFile = getVirtualFile(classTreeNode);
+        if (virtualFile == null) {
+            return creatPresentation(project, classTreeNode);
+        }
+        return getCachedPresentation(project, virtualFile);
+    }
+
+    /**
+     * Get the presentation for a file node from the project's presentation cache, ex. a Kotlin, XML or Gradle file,
+     * or a Java file with several classes.  Resolved off the EDT like a class node's.
+     *
+     * @return the current presentation, else the stale one while it is resolved, null if there is none yet.
+     */
+    public static PainPointPresentation getCachedPresentation(Project project, VirtualFile virtualFile) {
 
-        //TODO I dont like this dependency
         ProjectViewManager projectViewManager = ProjectViewManager.getInstance(project);
-        String gitUsername = PainPointPresentationFactory.getGitUsername(project);
+        PresentationCache presentationCache = projectViewManager.getPresentationCache();
+
+        PainPointPresentation cached = getCurrent(presentationCache, projectViewManager.getPainPointDomain(), virtualFile);
+        if (cached != null) {
+            return cached;
+        }
+        projectViewManager.getPresentationResolver().request(virtualFile);
+        return presentationCache.peek(virtualFile);
+    }
+
+    private static VirtualFile getVirtualFile(ClassTreeNode classTreeNode) {
+        PsiClass psiClass = classTreeNode.getPsiClass();
+        PsiFile psiFile = psiClass != null ? psiClass.getContainingFile() : null;
+        return psiFile != null ? psiFile.getVirtualFile() : null;
+    }
+
+    private static PainPointPresentation getCurrent(PresentationCache presentationCache, PainPointDomain painPointDomain, VirtualFile virtualFile) {
+        PainPointPresentation cached = presentationCache.peek(virtualFile);
+        if (cached == null) {
+            return null;
+        }
+        long storeStamp = cached.getClassId() != null ? painPointDomain.getClassStamp(cached.getClassId()) : 0;
+        return presentationCache.get(virtualFile, storeStamp);
+    }
+
+    public static PainPointPresentation creatPresentation(Project project, ClassTreeNode classTreeNode) {
 
         //TODO these methods in ClassFileIdCalulator do too much.  Do more here or split the functions up.
         Integer classId = ClassFileIdCalulator.classIdForNode(classTreeNode);
 
-        Integer painPointId = DataModelUtil.generatePainPointId(classId, gitUsername);
         String classFileName = ClassFileIdCalulator.classFileNameForNode(classTreeNode);
-        List<PainPoint> painPoints = projectViewManager.getPainPointsForClassId(classId);
 
-        PsiClass psiClass = classTreeNode.getPsiClass();
-        int todoCount = getTodoCount(psiClass);
+        VirtualFile virtualFile = getVirtualFile(classTreeNode);
+        MarkerCounts markerCounts = virtualFile != null ? getMarkerCounts(project, virtualFile)
+                : TodoTracker.countMarkers(classTreeNode.getPsiClass().getContainingFile());
 
-        return new PainPointPresentation(classId, painPointId, gitUsername, painPoints, classFileName, todoCount);
+        return creatPresentation(project, classId, classFileName, markerCounts);
     }
 
-    public static String getGitUsername(Project project) {
+    /**
+     * Build a class presentation from what was already read from the PSI, the vote totals are looked up here.
+     * Doesn't need a read action, so background work can read the PSI first and do the lookup after.
+     */
+    public static PainPointPresentation creatPresentation(Project project, Integer classId, String classFileName, MarkerCounts markerCounts) {
 
-        String gitUsername = "";
-        if (project == null) {
-            return gitUsername;
-        }
+        //TODO I dont like this dependency
+        ProjectViewManager projectViewManager = ProjectViewManager.getInstance(project);
+        String gitUsername = PainPointPresentationFactory.getGitUsername(project);
 
-        String projectPath = project.getBasePath();
-        if (projectPath == null) {
-            return gitUsername;
-        }
+        // the tree only shows totals, so skip loading every vote for the class.
+        ClassAggregate classAggregate = projectViewManager.getAggregateForClassId(classId);
 
-        String configFile = projectPath.concat("/.pairs");
-        String configYaml = "";
-        try {
-            BufferedReader br = new BufferedReader(new FileReader(configFile));
-            String line;
-            while ((line = br.readLine()) != null) {
-                configYaml += line + "\n";
-            }
-        } catch (IOException e) {
-            System.out.println("Git Pair plugin couldn't open " + configFile + ": " + e.getMessage());
-            return gitUsername;
-        }
+        return creatPresentation(classId, gitUsername, classAggregate, classFileName, markerCounts);
+    }
 
-        PairConfig pairConfig = new PairConfig(configYaml);
-        GitRunner gitRunner = new GitRunner(projectPath);
-        PairController pairController = new PairController(pairConfig, gitRunner);
-        pairController.init();
+    /**
+     * Build a class presentation from totals that were already looked up, ex. for a whole tree level at once.
+     */
+    public static PainPointPresentation creatPresentation(Integer classId, String gitUsername, ClassAggregate classAggregate, String classFileName, MarkerCounts markerCounts) {
 
-        gitUsername = pairController.getPairDisplayName();
+        Integer painPointId = DataModelUtil.generatePainPointId(classId, gitUsername);
+        return new PainPointPresentation(classId, painPointId, gitUsername, classAggregate, classFileName, markerCounts);
+    }
 
-        if(gitUsername == null || gitUsername.isEmpty()) {
-            gitUsername = gitRunner.getUserName();
-        }
+    public static String getGitUsername(Project project) {
 
-        return gitUsername;
+        if (project == null) {
+            return "";
+        }
+        // resolved once per project, reading .pairs and asking git on every node was the slow part of decorating.
+        return GitIdentityManager.getInstance(project).getDisplayName();
     }
 
     public static int getTodoCount(PsiClass psiClass) {
-        return StringUtils.countMatches(psiClass.getText().toLowerCase(), "todo");
+        PsiFile psiFile = psiClass.getContainingFile();
+        VirtualFile virtualFile = psiFile.getVirtualFile();
+        return virtualFile != null ? getTodoCount(psiFile.getProject(), virtualFile) : getTodoCount(psiFile);
     }
 
-    public static int getTodoCountSimple(PsiFile psiFile) {
-
-        int todoCount = 0;
-        String[] lines = psiFile.getText().split("\n").clone();
-        for(String line : lines) {
+    public static int getTodoCount(Project project, VirtualFile virtualFile) {
+        return getMarkerCounts(project, virtualFile).getTotal();
+    }
 
-            if(StringUtils.containsIgnoreCase(line, "todo")) {
-                todoCount++;
-            }
+    /**
+     * Count the comment markers of a file.
+     * A file edited this session has running counts kept from its PSI changes.
+     * Other files are read from the {@link MarkerIndex}, which the platform keeps up to date across sessions,
+     * without loading the PSI or the text.
+     * While the index is being built the comment tokens of the file's lexer are scanned instead.
+     */
+    public static MarkerCounts getMarkerCounts(Project project, VirtualFile virtualFile) {
+        MarkerCounts trackedCounts = ProjectViewManager.getInstance(project).getTodoTracker().getMarkerCounts(virtualFile);
+        if (trackedCounts != null) {
+            return trackedCounts;
         }
-        return todoCount;
+        MarkerCounts indexedCounts = MarkerIndex.getMarkerCounts(project, virtualFile);
+        if (indexedCounts != null) {
+            return indexedCounts;
+        }
+        MarkerCounts scannedCounts = CommentScanner.countMarkers(project, virtualFile);
+        return scannedCounts != null ? scannedCounts : MarkerCounts.none();
     }
 
-    public static int getTodoCount(PsiFile psiFile) {
-
-        final List<String>todoList = new ArrayList<>();
-        psiFile.accept(new PsiRecursiveElementWalkingVisitor() {
-            @Override
-            public void visitElement(PsiElement element) {
-                super.visitElement(element);
-
-                if(element instanceof PsiCommentImpl) {
-
-                    String commentText = element.getText();
-                    if(StringUtils.containsIgnoreCase(commentText, "TODO")) {
-                        todoList.add(element.getText());
-                    }
-                }
-
-            }
-            private boolean checkForTodo(PsiElement psiElement) {
-
-
-                return false;
-            }
+    /**
+     * Count the markers anywhere in the file's text, not only in comments.
+     */
+    public static int getTodoCountSimple(PsiFile psiFile) {
+        return MarkerScanner.getDefault().count(psiFile.getViewProvider().getContents()).getTotal();
+    }
 
-                });
-        return todoList.size();
+    /**
+     * Count the markers in the file's comments, once per line each.
+     */
+    public static int getTodoCount(PsiFile psiFile) {
+        return TodoTracker.countMarkers(psiFile).getTotal();
     }
 
-    public static PainPointPresentation creatPresentation(Project project, VirtualFile virtualFile, PsiJavaFile psiJavaFile) {
+    public static PainPointPresentation creatPresentation(Project project, VirtualFile virtualFile, PsiFile psiFile) {
 
         //TODO I dont like this dependency
         ProjectViewManager projectViewManager = ProjectViewManager.getInstance(project);
@@ -137,7 +178,11 @@ public class PainPointPresentationFactory {
         String classFileName = virtualFile.getName();
         List<PainPoint> painPoints = projectViewManager.getPainPointsForClassId(classId);
 
-        int todoCount = getTodoCount(psiJavaFile);
-        return new PainPointPresentation(classId, painPointId, gitPairUser, painPoints, classFileName, todoCount);
+        // split by marker for the dialog, the lexer is cheaper than walking the PSI.
+        MarkerCounts markerCounts = CommentScanner.countMarkers(project, virtualFile);
+        if (markerCounts == null) {
+            markerCounts = TodoTracker.countMarkers(psiFile);
+        }
+        return new PainPointPresentation(classId, painPointId, gitPairUser, painPoints, classFileName, markerCounts);
     }
 }
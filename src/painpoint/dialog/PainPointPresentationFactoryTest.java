@@ -111,4 +111,31 @@ public class PainPointPresentationFactoryTest extends LightCodeInsightFixtureTes
         assertEquals(expectedTodoCount, todoCount);
     }
 
-}
\ No newline at end of file
+    public void testGetTodoCountFromIndex_FiveTodos() throws Exception {
+
+        // GIVEN a test java class with TODO on five lines, one of them more than once, each line counts once.
+        int expectedTodoCount = 5;
+        myFixture.configureByFiles("FiveMatches.java");
+        PsiFile psiTestFile = myFixture.getFile();
+
+        // WHEN getTodoCount is read from the marker index.
+        int todoCount = PainPointPresentationFactory.getTodoCount(myFixture.getProject(), psiTestFile.getVirtualFile());
+
+        // Then the result should be expectedTodoCount
+        assertEquals(expectedTodoCount, todoCount);
+    }
+
+    public void testGetTodoCountFromIndex_TodoInStringLiteral() throws Exception {
+
+        // GIVEN a test java class with TODO only in a string literal.
+        int expectedTodoCount = 0;
+        myFixture.configureByFiles("TodoInStringLiteral.java");
+        PsiFile psiTestFile = myFixture.getFile();
+
+        // WHEN getTodoCount is read from the marker index.
+        int todoCount = PainPointPresentationFactory.getTodoCount(myFixture.getProject(), psiTestFile.getVirtualFile());
+
+        // Then the result should be expectedTodoCount
+        assertEquals(expectedTodoCount, todoCount);
+    }
+}
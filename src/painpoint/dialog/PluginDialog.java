@@ -3,7 +3,6 @@ package painpoint.dialog;
 import com.intellij.openapi.project.Project;
 import java.awt.event.ActionEvent;
 
-import painpoint.component.ProjectViewManager;
 import painpoint.decoration.PainPointPresentation;
 import painpoint.domain.painpoint.PainPointDomain;
 import javax.swing.*;
@@ -21,7 +20,6 @@ public class PluginDialog extends JDialog {
         catch (SQLException sEx) {
             System.out.println("SQLException.." + sEx.getMessage());
         }
-        ProjectViewManager projectViewManager = ProjectViewManager.getInstance(project);
         setSize(100,100);
 
         System.out.println("creating the window..");
@@ -32,6 +30,10 @@ public class PluginDialog extends JDialog {
         // Create a message
         JPanel messagePane = new JPanel();
         messagePane.add(new JLabel("Report"));
+        // each marker's count, ex. "TODO 3, FIXME 1".
+        if (painPointPresentation.hasTodos()) {
+            messagePane.add(new JLabel(painPointPresentation.getMarkerCounts().toString()));
+        }
         // get content pane, which is usually the
         // Container of all the dialog's components.
         getContentPane().add(messagePane);
@@ -45,14 +47,9 @@ public class PluginDialog extends JDialog {
             boolean isSelected = jCheckBox1.isSelected();
             Integer classId = painPointPresentation.getClassId();
             String gitPair = painPointPresentation.getGitPairString();
+            // queued for the write-behind thread, the cache already has the vote.
+            // the vote listener repaints just this class's node, no reload or full refresh needed.
             painPointDomain.addOrUpdateForClass(classId, gitPair, isSelected);
-            try {
-                painPointDomain.getPainPointMap(true);
-            }
-            catch (SQLException sqlEx) {
-                System.out.println("SQLException: " + sqlEx.getMessage());
-            }
-            projectViewManager.refreshProjectView(project);
         });
         cbPane.add(jCheckBox);
         messagePane.add(cbPane);
@@ -0,0 +1,193 @@
+package painpoint.domain.connection;
+
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A small bounded pool of JDBC connections.
+ * Idle connections are checked with a server round trip before they are reused, and closed when idle for too long.
+ */
+public class ConnectionPool {
+
+    private static final int VALIDATION_TIMEOUT_SECONDS = 1;
+
+    private final String mUrl;
+    private final String mUser;
+    private final String mPassword;
+    private final Semaphore mPermits;
+    private final Deque<PooledConnection> mIdleConnections = new ArrayDeque<>();
+    private final long mBorrowTimeoutMillis;
+    private final long mIdleTimeoutMillis;
+    private final long mValidationIntervalMillis;
+    private final int mMaxCachedStatements;
+    private volatile boolean mClosed;
+
+    /**
+     * Create a pool for a JDBC url.  No connections are opened until the first {@link #borrow()}.
+     *
+     * @param driverClassName          JDBC driver to load, ex. "org.h2.Driver".
+     * @param url                      JDBC url of the database.
+     * @param user                     database user.
+     * @param password                 database password.
+     * @param maxSize                  most connections open at one time.
+     * @param borrowTimeoutMillis      how long {@link #borrow()} waits for a free connection.
+     * @param idleTimeoutMillis        idle connections older than this are closed.
+     * @param validationIntervalMillis idle connections older than this are validated before reuse.
+     * @param maxCachedStatements      prepared statements kept per connection.
+     * @throws ClassNotFoundException if the driver is not on the classpath.
+     */
+    public ConnectionPool(String driverClassName, String url, String user, String password,
+                          int maxSize, long borrowTimeoutMillis, long idleTimeoutMillis,
+                          long validationIntervalMillis, int maxCachedStatements) throws ClassNotFoundException {
+        Class.forName(driverClassName);
+        mUrl = url;
+        mUser = user;
+        mPassword = password;
+        mPermits = new Semaphore(maxSize, true);
+        mBorrowTimeoutMillis = borrowTimeoutMillis;
+        mIdleTimeoutMillis = idleTimeoutMillis;
+        mValidationIntervalMillis = validationIntervalMillis;
+        mMaxCachedStatements = maxCachedStatements;
+    }
+
+    /**
+     * Take a connection from the pool, opening a new one if no healthy idle connection is available.
+     * Every borrowed connection must be handed back with {@link #release(PooledConnection)} or {@link #invalidate(PooledConnection)}.
+     *
+     * @return a connection ready for use.
+     * @throws SQLException if the pool is closed, exhausted, or the database can't be reached.
+     */
+    public PooledConnection borrow() throws SQLException {
+        if (mClosed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        try {
+            if (!mPermits.tryAcquire(mBorrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Timed out waiting for a pooled connection to " + mUrl);
+            }
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted waiting for a pooled connection to " + mUrl);
+        }
+
+        try {
+            evictIdleConnections();
+            PooledConnection pooledConnection;
+            while ((pooledConnection = pollIdleConnection()) != null) {
+                if (isHealthy(pooledConnection)) {
+                    pooledConnection.markUsed();
+                    return pooledConnection;
+                }
+                pooledConnection.close();
+            }
+            return new PooledConnection(DriverManager.getConnection(mUrl, mUser, mPassword), mMaxCachedStatements);
+        }
+        catch (SQLException | RuntimeException ex) {
+            mPermits.release();
+            throw ex;
+        }
+    }
+
+    /**
+     * Hand a healthy connection back to the pool.
+     *
+     * @param pooledConnection connection from {@link #borrow()}, may be null.
+     */
+    public void release(PooledConnection pooledConnection) {
+        if (pooledConnection == null) {
+            return;
+        }
+        if (mClosed || pooledConnection.isClosed()) {
+            pooledConnection.close();
+        }
+        else {
+            pooledConnection.markUsed();
+            synchronized (mIdleConnections) {
+                mIdleConnections.push(pooledConnection);
+            }
+        }
+        mPermits.release();
+    }
+
+    /**
+     * Hand back a connection that failed, so it is closed instead of reused.
+     *
+     * @param pooledConnection connection from {@link #borrow()}, may be null.
+     */
+    public void invalidate(PooledConnection pooledConnection) {
+        if (pooledConnection == null) {
+            return;
+        }
+        pooledConnection.close();
+        mPermits.release();
+    }
+
+    /**
+     * Close every idle connection and refuse new borrows.  Borrowed connections are closed as they are released.
+     */
+    public void close() {
+        mClosed = true;
+        List<PooledConnection> idle;
+        synchronized (mIdleConnections) {
+            idle = new ArrayList<>(mIdleConnections);
+            mIdleConnections.clear();
+        }
+        for (PooledConnection pooledConnection : idle) {
+            pooledConnection.close();
+        }
+    }
+
+    /**
+     * Number of idle connections ready to be borrowed.
+     *
+     * @return idle connection count.
+     */
+    public int getIdleCount() {
+        synchronized (mIdleConnections) {
+            return mIdleConnections.size();
+        }
+    }
+
+    private PooledConnection pollIdleConnection() {
+        synchronized (mIdleConnections) {
+            // most recently used first, so the rarely used ones age out.
+            return mIdleConnections.pollFirst();
+        }
+    }
+
+    private boolean isHealthy(PooledConnection pooledConnection) {
+        // a connection that was in use a moment ago is trusted without another round trip.
+        if (System.currentTimeMillis() - pooledConnection.getLastUsedMillis() < mValidationIntervalMillis) {
+            return !pooledConnection.isClosed();
+        }
+        return pooledConnection.validate(VALIDATION_TIMEOUT_SECONDS);
+    }
+
+    private void evictIdleConnections() {
+        List<PooledConnection> evicted = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        synchronized (mIdleConnections) {
+            Iterator<PooledConnection> iterator = mIdleConnections.descendingIterator();
+            while (iterator.hasNext()) {
+                PooledConnection pooledConnection = iterator.next();
+                if (now - pooledConnection.getLastUsedMillis() < mIdleTimeoutMillis) {
+                    // the rest of the deque was used more recently.
+                    break;
+                }
+                iterator.remove();
+                evicted.add(pooledConnection);
+            }
+        }
+        for (PooledConnection pooledConnection : evicted) {
+            pooledConnection.close();
+        }
+    }
+}
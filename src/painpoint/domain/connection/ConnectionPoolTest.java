@@ -0,0 +1,88 @@
+package painpoint.domain.connection;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import static org.junit.Assert.*;
+
+public class ConnectionPoolTest {
+
+    private ConnectionPool mConnectionPool;
+
+    @Before
+    public void setUp() throws Exception {
+        mConnectionPool = new ConnectionPool("org.h2.Driver", "jdbc:h2:mem:poolTest;DB_CLOSE_DELAY=-1", "sa", "",
+                1, 100, 60 * 1000, 5 * 1000, 4);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mConnectionPool.close();
+    }
+
+    @Test
+    public void testBorrow_reusesReleasedConnection() throws Exception {
+
+        // GIVEN a connection that was borrowed and released.
+        PooledConnection first = mConnectionPool.borrow();
+        mConnectionPool.release(first);
+
+        // WHEN another connection is borrowed.
+        PooledConnection second = mConnectionPool.borrow();
+        mConnectionPool.release(second);
+
+        // THEN the same connection is handed out again.
+        assertSame(first, second);
+        assertEquals(1, mConnectionPool.getIdleCount());
+    }
+
+    @Test
+    public void testPrepare_cachesStatementPerConnection() throws Exception {
+
+        // GIVEN a borrowed connection.
+        PooledConnection conn = mConnectionPool.borrow();
+
+        // WHEN the same sql is prepared twice.
+        PreparedStatement first = conn.prepare("SELECT ?");
+        PreparedStatement second = conn.prepare("SELECT ?");
+        mConnectionPool.release(conn);
+
+        // THEN the statement is reused.
+        assertSame(first, second);
+    }
+
+    @Test(expected = SQLException.class)
+    public void testBorrow_poolExhausted() throws Exception {
+
+        // GIVEN a pool of one with its only connection borrowed.
+        PooledConnection first = mConnectionPool.borrow();
+
+        // WHEN another connection is borrowed THEN the borrow times out.
+        try {
+            mConnectionPool.borrow();
+        }
+        finally {
+            mConnectionPool.release(first);
+        }
+    }
+
+    @Test
+    public void testInvalidate_closesConnection() throws Exception {
+
+        // GIVEN a borrowed connection that failed.
+        PooledConnection first = mConnectionPool.borrow();
+        mConnectionPool.invalidate(first);
+
+        // WHEN another connection is borrowed.
+        PooledConnection second = mConnectionPool.borrow();
+        mConnectionPool.release(second);
+
+        // THEN a fresh connection is opened.
+        assertNotSame(first, second);
+        assertTrue(first.isClosed());
+    }
+}
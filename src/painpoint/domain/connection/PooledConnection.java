@@ -0,0 +1,104 @@
+package painpoint.domain.connection;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A JDBC connection owned by a {@link ConnectionPool}, with its own cache of prepared statements.
+ * Statements handed out by {@link #prepare(String)} belong to the connection, callers must not close them.
+ */
+public class PooledConnection {
+
+    private final Connection mConnection;
+    private final Map<String, PreparedStatement> mStatementCache = new HashMap<>();
+    private final int mMaxCachedStatements;
+    private long mLastUsedMillis;
+
+    PooledConnection(Connection connection, int maxCachedStatements) {
+        mConnection = connection;
+        mMaxCachedStatements = maxCachedStatements;
+        mLastUsedMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * Get a prepared statement for the sql, reusing the one prepared earlier on this connection if there is one.
+     *
+     * @param sql parameterized sql, used as the cache key.
+     * @return prepared statement with cleared parameters.
+     * @throws SQLException if the statement could not be prepared.
+     */
+    public PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement statement = mStatementCache.get(sql);
+        if (statement != null && !statement.isClosed()) {
+            statement.clearParameters();
+            return statement;
+        }
+        if (mStatementCache.size() >= mMaxCachedStatements) {
+            closeStatements();
+        }
+        statement = mConnection.prepareStatement(sql);
+        mStatementCache.put(sql, statement);
+        return statement;
+    }
+
+    public Connection getConnection() {
+        return mConnection;
+    }
+
+    /**
+     * Check the connection with a server round trip.
+     *
+     * @param timeoutSeconds how long to wait for the server.
+     * @return true if the connection is still usable.
+     */
+    boolean validate(int timeoutSeconds) {
+        try {
+            return !mConnection.isClosed() && mConnection.isValid(timeoutSeconds);
+        }
+        catch (SQLException ex) {
+            return false;
+        }
+    }
+
+    boolean isClosed() {
+        try {
+            return mConnection.isClosed();
+        }
+        catch (SQLException ex) {
+            return true;
+        }
+    }
+
+    long getLastUsedMillis() {
+        return mLastUsedMillis;
+    }
+
+    void markUsed() {
+        mLastUsedMillis = System.currentTimeMillis();
+    }
+
+    private void closeStatements() {
+        for (PreparedStatement statement : mStatementCache.values()) {
+            try {
+                statement.close();
+            }
+            catch (SQLException ignored) {
+                // the connection is on its way out or the statement is already gone.
+            }
+        }
+        mStatementCache.clear();
+    }
+
+    void close() {
+        closeStatements();
+        try {
+            mConnection.close();
+        }
+        catch (SQLException ignored) {
+            // nothing left to clean up.
+        }
+    }
+}
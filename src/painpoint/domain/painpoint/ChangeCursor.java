@@ -0,0 +1,94 @@
+package painpoint.domain.painpoint;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Where the next read of changed votes starts.
+ * Sequence numbers are taken before commit, so a slow writer can commit below a version already seen.
+ * Every version skipped over is kept as a gap, and reads start below the oldest gap until the version shows up
+ * or the gap expires, so a late commit is read however many versions other clients took meanwhile.
+ * Not every gap is a late commit, a vote changed again gets a new version and leaves its old one behind for good,
+ * which is why gaps expire.
+ */
+public class ChangeCursor {
+
+    private final long mOverlap;
+    private final long mGapTimeoutMillis;
+    private final int mMaxGaps;
+    private long mLastSeenVersion = -1;
+    // version not seen yet to when it was first skipped over.
+    private final TreeMap<Long, Long> mOpenGaps = new TreeMap<>();
+
+    /**
+     * @param overlap          versions behind the last seen one that are always re-read.
+     * @param gapTimeoutMillis how long to wait for a skipped version to commit.
+     * @param maxGaps          most skipped versions kept, the oldest are dropped first.
+     */
+    public ChangeCursor(long overlap, long gapTimeoutMillis, int maxGaps) {
+        mOverlap = overlap;
+        mGapTimeoutMillis = gapTimeoutMillis;
+        mMaxGaps = maxGaps;
+    }
+
+    /**
+     * Start over after a full load.
+     *
+     * @param lastSeenVersion highest version loaded.
+     */
+    public synchronized void reset(long lastSeenVersion) {
+        mLastSeenVersion = lastSeenVersion;
+        mOpenGaps.clear();
+    }
+
+    /**
+     * Record the versions of a read, closing the gaps they fill and opening gaps for the ones they skip.
+     *
+     * @param versions  versions read, in any order.
+     * @param nowMillis current time.
+     */
+    public synchronized void seen(Collection<Long> versions, long nowMillis) {
+        TreeSet<Long> sorted = new TreeSet<>(versions);
+        for (Long version : sorted) {
+            mOpenGaps.remove(version);
+        }
+        long last = mLastSeenVersion;
+        for (long version : sorted.tailSet(last, false)) {
+            for (long missing = Math.max(last + 1, version - mMaxGaps); missing < version; missing++) {
+                mOpenGaps.put(missing, nowMillis);
+            }
+            last = version;
+        }
+        mLastSeenVersion = last;
+        while (mOpenGaps.size() > mMaxGaps) {
+            mOpenGaps.pollFirstEntry();
+        }
+    }
+
+    /**
+     * @param nowMillis current time, gaps older than the timeout are given up on.
+     * @return version to read changes after.
+     */
+    public synchronized long getReadFrom(long nowMillis) {
+        mOpenGaps.values().removeIf(firstMissedMillis -> nowMillis - firstMissedMillis > mGapTimeoutMillis);
+        long readFrom = mLastSeenVersion - mOverlap;
+        Map.Entry<Long, Long> oldestGap = mOpenGaps.firstEntry();
+        if (oldestGap != null) {
+            readFrom = Math.min(readFrom, oldestGap.getKey() - 1);
+        }
+        return Math.max(0, readFrom);
+    }
+
+    /**
+     * @return highest version seen, or -1 before the first load.
+     */
+    public synchronized long getLastSeenVersion() {
+        return mLastSeenVersion;
+    }
+
+    public synchronized int getOpenGapCount() {
+        return mOpenGaps.size();
+    }
+}
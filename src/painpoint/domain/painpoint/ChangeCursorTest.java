@@ -0,0 +1,48 @@
+package painpoint.domain.painpoint;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class ChangeCursorTest {
+
+    @Test
+    public void testGetReadFrom_staysBelowALateCommit() throws Exception {
+
+        // GIVEN a cursor that saw version 10, then other clients' versions up to 300 with 11 still uncommitted.
+        ChangeCursor cursor = new ChangeCursor(4, 60000, 1000);
+        cursor.reset(10);
+        cursor.seen(Arrays.asList(12L, 13L, 300L), 1000);
+
+        // WHEN the next read is planned.
+        long readFrom = cursor.getReadFrom(2000);
+
+        // THEN it starts below the missing version, not just a short stretch behind the last one.
+        assertEquals(10, readFrom);
+        assertEquals(300, cursor.getLastSeenVersion());
+    }
+
+    @Test
+    public void testGetReadFrom_movesOnWhenGapsFillOrExpire() throws Exception {
+
+        // GIVEN a cursor with versions 11 and 12 missing.
+        ChangeCursor cursor = new ChangeCursor(4, 60000, 1000);
+        cursor.reset(10);
+        cursor.seen(Arrays.asList(13L, 20L), 1000);
+
+        // WHEN version 11 commits late.
+        cursor.seen(Arrays.asList(11L), 2000);
+
+        // THEN reads start below 12, the oldest version still missing.
+        assertEquals(11, cursor.getReadFrom(3000));
+
+        // WHEN the missing versions never show up, ex. their votes were changed again.
+        long readFrom = cursor.getReadFrom(1000 + 60001);
+
+        // THEN they are given up on, and reads only overlap the last version.
+        assertEquals(16, readFrom);
+        assertEquals(0, cursor.getOpenGapCount());
+    }
+}
@@ -0,0 +1,114 @@
+package painpoint.domain.painpoint;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter over the class ids that have votes.
+ * {@link #mightContain(int)} never answers false for an added class id, so a false answer means the store can be skipped.
+ * Safe to add to and query from several threads.
+ */
+public class ClassIdBloomFilter {
+
+    private final AtomicLongArray mBits;
+    private final int mBitCount;
+    private final int mHashCount;
+    private final int mExpectedInsertions;
+    // class ids that set a new bit, repeats of an added class id don't count.
+    private final AtomicInteger mInsertions = new AtomicInteger();
+
+    /**
+     * Size the filter for the expected number of class ids.
+     *
+     * @param expectedInsertions number of class ids the filter should hold.
+     * @param falsePositiveRate  wanted chance that an absent class id is reported present, ex. 0.01.
+     */
+    public ClassIdBloomFilter(int expectedInsertions, double falsePositiveRate) {
+        int insertions = Math.max(1, expectedInsertions);
+        long bitCount = (long) Math.ceil(-insertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        bitCount = Math.max(64, Math.min(bitCount, Integer.MAX_VALUE - 63));
+        mBits = new AtomicLongArray((int) ((bitCount + 63) / 64));
+        mBitCount = mBits.length() * 64;
+        mHashCount = Math.max(1, (int) Math.round((double) mBitCount / insertions * Math.log(2)));
+        mExpectedInsertions = insertions;
+    }
+
+    /**
+     * Add a class id.
+     *
+     * @param classId class id with votes.
+     */
+    public void add(int classId) {
+        long hash = mix(classId);
+        int hash1 = (int) hash;
+        int hash2 = (int) (hash >>> 32);
+        boolean newBit = false;
+        for (int i = 0; i < mHashCount; i++) {
+            newBit |= setBit(bitIndex(hash1 + i * hash2));
+        }
+        if (newBit) {
+            mInsertions.incrementAndGet();
+        }
+    }
+
+    /**
+     * Has the filter taken more class ids than it was sized for, so its false positive rate is above the one asked for.
+     *
+     * @return true once it should be rebuilt bigger.
+     */
+    public boolean isOverfilled() {
+        return mInsertions.get() > mExpectedInsertions;
+    }
+
+    public int getInsertionCount() {
+        return mInsertions.get();
+    }
+
+    /**
+     * Could the class id have been added.
+     *
+     * @param classId class id to check.
+     * @return false if the class id was definitely never added.
+     */
+    public boolean mightContain(int classId) {
+        long hash = mix(classId);
+        int hash1 = (int) hash;
+        int hash2 = (int) (hash >>> 32);
+        for (int i = 0; i < mHashCount; i++) {
+            int bit = bitIndex(hash1 + i * hash2);
+            if ((mBits.get(bit >>> 6) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int bitIndex(int combinedHash) {
+        return (combinedHash & Integer.MAX_VALUE) % mBitCount;
+    }
+
+    // true if the bit wasn't set yet.
+    private boolean setBit(int bit) {
+        int index = bit >>> 6;
+        long mask = 1L << bit;
+        long word;
+        do {
+            word = mBits.get(index);
+            if ((word & mask) != 0) {
+                return false;
+            }
+        } while (!mBits.compareAndSet(index, word, word | mask));
+        return true;
+    }
+
+    // Class ids are String hash codes, spread them over 64 bits (the murmur3 finalizer) before splitting into two hashes.
+    private static long mix(int classId) {
+        long hash = classId;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
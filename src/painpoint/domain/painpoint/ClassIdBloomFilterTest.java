@@ -0,0 +1,64 @@
+package painpoint.domain.painpoint;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ClassIdBloomFilterTest {
+
+    @Test
+    public void testMightContain_addedClassIds() throws Exception {
+
+        // GIVEN a filter with class ids added.
+        ClassIdBloomFilter filter = new ClassIdBloomFilter(1000, 0.01);
+        for (int i = 0; i < 1000; i++) {
+            filter.add(("/ProjectName/app/src/File" + i + ".java").hashCode());
+        }
+
+        // WHEN the added class ids are checked THEN none are missing.
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(filter.mightContain(("/ProjectName/app/src/File" + i + ".java").hashCode()));
+        }
+    }
+
+    @Test
+    public void testMightContain_mostlyFalseForOtherClassIds() throws Exception {
+
+        // GIVEN a filter sized for 1% false positives, filled to capacity.
+        ClassIdBloomFilter filter = new ClassIdBloomFilter(1000, 0.01);
+        for (int i = 0; i < 1000; i++) {
+            filter.add(("/ProjectName/app/src/File" + i + ".java").hashCode());
+        }
+
+        // WHEN class ids that were never added are checked.
+        int falsePositives = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (filter.mightContain(("/ProjectName/lib/src/Other" + i + ".java").hashCode())) {
+                falsePositives++;
+            }
+        }
+
+        // THEN only a few are reported present.
+        assertTrue("false positives: " + falsePositives, falsePositives < 300);
+    }
+
+    @Test
+    public void testIsOverfilled_afterMoreClassIdsThanExpected() throws Exception {
+
+        // GIVEN a filter sized for 100 class ids, filled to capacity with each added twice.
+        ClassIdBloomFilter filter = new ClassIdBloomFilter(100, 0.01);
+        for (int i = 0; i < 100; i++) {
+            filter.add(("/ProjectName/app/src/File" + i + ".java").hashCode());
+            filter.add(("/ProjectName/app/src/File" + i + ".java").hashCode());
+        }
+        assertFalse(filter.isOverfilled());
+
+        // WHEN more class ids are added than it was sized for.
+        for (int i = 100; i < 120; i++) {
+            filter.add(("/ProjectName/app/src/File" + i + ".java").hashCode());
+        }
+
+        // THEN it asks to be rebuilt.
+        assertTrue(filter.isOverfilled());
+    }
+}
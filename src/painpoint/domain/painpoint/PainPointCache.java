@@ -0,0 +1,177 @@
+package painpoint.domain.painpoint;
+
+import painpoint.domain.painpoint.model.PainPoint;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread-safe cache of votes, indexed by pain point id and by class id.
+ * The votes of a class are an immutable list that is swapped atomically on every update,
+ * so readers on the EDT never wait on a writer and never see half an update.
+ * Every swap also gives the class a new stamp, so derived data can tell whether the class changed.
+ */
+public class PainPointCache {
+
+    private final Map<Integer, PainPoint> mById = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, List<PainPoint>> mByClassId = new ConcurrentHashMap<>();
+    private final Map<Integer, Long> mClassStamps = new ConcurrentHashMap<>();
+    private final AtomicLong mNextStamp = new AtomicLong();
+    private volatile boolean mLoaded;
+
+    /**
+     * Add or replace a vote.
+     *
+     * @param painPoint vote, replaces the cached vote with the same id.
+     * @return true if the cache changed, false if it already had the same vote.
+     */
+    public boolean put(PainPoint painPoint) {
+        if (painPoint == null) {
+            return false;
+        }
+        boolean[] changed = new boolean[1];
+        mByClassId.compute(painPoint.getClassId(), (classId, votes) -> {
+            PainPoint cached = mById.get(painPoint.getId());
+            if (votes != null && cached != null && cached.isThumbsDown() == painPoint.isThumbsDown()
+                    && cached.getVersion() == painPoint.getVersion()) {
+                return votes;
+            }
+            mById.put(painPoint.getId(), painPoint);
+            mClassStamps.put(classId, mNextStamp.incrementAndGet());
+            changed[0] = true;
+            return withVote(votes, painPoint);
+        });
+        return changed[0];
+    }
+
+    /**
+     * Add or replace several votes.
+     *
+     * @param painPoints votes to add.
+     * @return ids of the classes that changed.
+     */
+    public Set<Integer> putAll(Collection<PainPoint> painPoints) {
+        Set<Integer> changedClassIds = new HashSet<>();
+        for (PainPoint painPoint : painPoints) {
+            if (put(painPoint)) {
+                changedClassIds.add(painPoint.getClassId());
+            }
+        }
+        return changedClassIds;
+    }
+
+    /**
+     * Replace the contents with a full load of the votes and mark the cache as loaded.
+     *
+     * @param painPoints every vote.
+     */
+    public void load(Collection<PainPoint> painPoints) {
+        Map<Integer, List<PainPoint>> byClassId = new HashMap<>();
+        for (PainPoint painPoint : painPoints) {
+            List<PainPoint> votes = byClassId.get(painPoint.getClassId());
+            if (votes == null) {
+                votes = new ArrayList<>();
+                byClassId.put(painPoint.getClassId(), votes);
+            }
+            votes.add(painPoint);
+        }
+
+        for (Integer classId : mByClassId.keySet()) {
+            if (!byClassId.containsKey(classId)) {
+                mByClassId.remove(classId);
+                mClassStamps.put(classId, mNextStamp.incrementAndGet());
+            }
+        }
+        for (Map.Entry<Integer, List<PainPoint>> entry : byClassId.entrySet()) {
+            List<PainPoint> loaded = Collections.unmodifiableList(entry.getValue());
+            mByClassId.compute(entry.getKey(), (classId, votes) -> {
+                if (votes != null) {
+                    for (PainPoint stale : votes) {
+                        mById.remove(stale.getId());
+                    }
+                }
+                for (PainPoint painPoint : loaded) {
+                    mById.put(painPoint.getId(), painPoint);
+                }
+                mClassStamps.put(classId, mNextStamp.incrementAndGet());
+                return loaded;
+            });
+        }
+        mById.values().removeIf(painPoint -> !byClassId.containsKey(painPoint.getClassId()));
+        mLoaded = true;
+    }
+
+    /**
+     * The votes for a class.
+     *
+     * @param classId class to look up.
+     * @return immutable snapshot of the votes, empty if there are none.
+     */
+    public List<PainPoint> getForClassId(Integer classId) {
+        List<PainPoint> votes = mByClassId.get(classId);
+        if (votes == null) {
+            return Collections.emptyList();
+        }
+        return votes;
+    }
+
+    /**
+     * Stamp of the last change to a class's votes.
+     *
+     * @param classId class to look up.
+     * @return a stamp that differs after every change to the class, 0 if it never changed.
+     */
+    public long getClassStamp(Integer classId) {
+        Long stamp = mClassStamps.get(classId);
+        return stamp != null ? stamp : 0;
+    }
+
+    /**
+     * Get a vote by pain point id.
+     *
+     * @param painPointId id of the vote.
+     * @return the vote or null.
+     */
+    public PainPoint get(Integer painPointId) {
+        return mById.get(painPointId);
+    }
+
+    /**
+     * Read-only view of every vote, keyed by pain point id.
+     *
+     * @return view backed by the cache.
+     */
+    public Map<Integer, PainPoint> asMap() {
+        return Collections.unmodifiableMap(mById);
+    }
+
+    /**
+     * Has a full load been applied with {@link #load(Collection)}.
+     *
+     * @return true once loaded.
+     */
+    public boolean isLoaded() {
+        return mLoaded;
+    }
+
+    private static List<PainPoint> withVote(List<PainPoint> votes, PainPoint painPoint) {
+        List<PainPoint> updated = new ArrayList<>();
+        if (votes != null) {
+            for (PainPoint vote : votes) {
+                if (!vote.getId().equals(painPoint.getId())) {
+                    updated.add(vote);
+                }
+            }
+        }
+        updated.add(painPoint);
+        return Collections.unmodifiableList(updated);
+    }
+}
@@ -0,0 +1,66 @@
+package painpoint.domain.painpoint;
+
+import org.junit.Test;
+import painpoint.domain.painpoint.model.PainPoint;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PainPointCacheTest {
+
+    @Test
+    public void testGetForClassId_onlyVotesForClass() throws Exception {
+
+        // GIVEN a cache with votes for two classes.
+        PainPointCache cache = new PainPointCache();
+        cache.load(Arrays.asList(
+                new PainPoint(1, 10, "phil", true),
+                new PainPoint(2, 10, "rob", false),
+                new PainPoint(3, 20, "phil", true)));
+
+        // WHEN the votes for one class are looked up.
+        List<PainPoint> votes = cache.getForClassId(10);
+
+        // THEN only that class's votes are returned, and the cache is unchanged.
+        assertEquals(2, votes.size());
+        assertEquals(1, cache.getForClassId(20).size());
+        assertEquals(3, cache.asMap().size());
+    }
+
+    @Test
+    public void testPut_replacesVoteWithSameId() throws Exception {
+
+        // GIVEN a cache with a thumbs down vote.
+        PainPointCache cache = new PainPointCache();
+        cache.put(new PainPoint(1, 10, "phil", true));
+        List<PainPoint> before = cache.getForClassId(10);
+
+        // WHEN the same user changes their vote.
+        cache.put(new PainPoint(1, 10, "phil", false));
+
+        // THEN the vote is replaced, and the earlier snapshot is untouched.
+        List<PainPoint> after = cache.getForClassId(10);
+        assertEquals(1, after.size());
+        assertFalse(after.get(0).isThumbsDown());
+        assertTrue(before.get(0).isThumbsDown());
+        assertFalse(cache.get(1).isThumbsDown());
+    }
+
+    @Test
+    public void testLoad_dropsClassesNoLongerPresent() throws Exception {
+
+        // GIVEN a loaded cache.
+        PainPointCache cache = new PainPointCache();
+        cache.load(Arrays.asList(new PainPoint(1, 10, "phil", true), new PainPoint(3, 20, "phil", true)));
+
+        // WHEN a full load without class 20 is applied.
+        cache.load(Arrays.asList(new PainPoint(1, 10, "phil", true)));
+
+        // THEN class 20 is gone from both indexes.
+        assertTrue(cache.getForClassId(20).isEmpty());
+        assertNull(cache.get(3));
+        assertTrue(cache.isLoaded());
+    }
+}
@@ -2,116 +2,343 @@ package painpoint.domain.painpoint;
 
 import com.intellij.ide.plugins.PluginManager;
 import groovy.lang.Singleton;
+import painpoint.domain.connection.ConnectionPool;
+import painpoint.domain.connection.PooledConnection;
+import painpoint.domain.painpoint.model.ClassAggregate;
 import painpoint.domain.painpoint.model.PainPoint;
 import painpoint.domain.painpoint.model.PainPointFactory;
+import painpoint.domain.schema.SchemaMigrator;
 import painpoint.domain.util.DataModelUtil;
 
 import java.sql.*;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 @Singleton
 public class PainPointDomain {
 
-    private static final String mTableName = "PainPoint";
+    static final String mTableName = "PainPoint";
+    static final String mAggregateTableName = "PainPointAggregate";
+    static final String mVersionSequenceName = "PainPoint_version_seq";
     private static final String FIELDS = "ID, CLASSID, USERNAME, THUMBSDOWN";
-    private Map<Integer, PainPoint> mPainPointMapCache = null;
+    private static final String SELECT_ALL_SQL = "SELECT " + FIELDS + ", VERSION FROM " + mTableName;
+    private static final String SELECT_BY_ID_SQL = SELECT_ALL_SQL + " WHERE id = ?";
+    private static final String SELECT_BY_CLASS_ID_SQL = SELECT_ALL_SQL + " WHERE classid = ?";
+    private static final String SELECT_CHANGES_SQL = SELECT_ALL_SQL + " WHERE version > ? ORDER BY version";
+    // One round trip whether or not the user already voted, the unique (classid, username) index finds the row.
+    // Every write takes the next change sequence number, so clients can ask for the rows changed since they last looked.
+    private static final String MERGE_SQL = "MERGE INTO " + mTableName + " (" + FIELDS + ", VERSION) KEY (CLASSID, USERNAME)"
+            + " VALUES (?, ?, ?, ?, NEXT VALUE FOR " + mVersionSequenceName + ")";
+    private static final String SELECT_AGGREGATE_BY_CLASS_ID_SQL = "SELECT classid, thumbs_down_count, voter_count, last_updated FROM "
+            + mAggregateTableName + " WHERE classid = ?";
+    // Bulk lookups pass the class ids as one array parameter and join it like a table, so any number of classes
+    // is one round trip through one cached statement.
+    private static final String CLASS_IDS_TABLE = "TABLE(classid INT = ?) ids";
+    private static final String SELECT_BY_CLASS_IDS_SQL = "SELECT p.id, p.classid, p.username, p.thumbsdown, p.version FROM "
+            + CLASS_IDS_TABLE + " INNER JOIN " + mTableName + " p ON p.classid = ids.classid";
+    private static final String SELECT_AGGREGATES_BY_CLASS_IDS_SQL = "SELECT a.classid, a.thumbs_down_count, a.voter_count, a.last_updated FROM "
+            + CLASS_IDS_TABLE + " INNER JOIN " + mAggregateTableName + " a ON a.classid = ids.classid";
+    private static final String REFRESH_AGGREGATE_SQL = "MERGE INTO " + mAggregateTableName
+            + " (classid, thumbs_down_count, voter_count, last_updated) KEY (classid)"
+            + " SELECT classid, SUM(CASE WHEN thumbsdown THEN 1 ELSE 0 END), COUNT(*), CURRENT_TIMESTAMP() FROM " + mTableName;
+    private static final String REFRESH_AGGREGATE_FOR_CLASS_ID_SQL = REFRESH_AGGREGATE_SQL + " WHERE classid = ? GROUP BY classid";
+    static final String REFRESH_ALL_AGGREGATES_SQL = REFRESH_AGGREGATE_SQL + " GROUP BY classid";
+
+    private static final String DB_DRIVER = "org.h2.Driver";
+    private static final String DB_URL = "jdbc:h2:tcp://localhost/~/test";
+    private static final String DB_USER = "sa";
+    private static final String DB_PASSWORD = "";
+    public static final int POOL_MAX_SIZE = 4;
+    private static final long POOL_BORROW_TIMEOUT_MILLIS = 2000;
+    private static final long POOL_IDLE_TIMEOUT_MILLIS = 60 * 1000;
+    private static final long POOL_VALIDATION_INTERVAL_MILLIS = 5 * 1000;
+    private static final int POOL_MAX_CACHED_STATEMENTS = 16;
+    private static final int WRITE_BATCH_SIZE = 50;
+    private static final long WRITE_MAX_DELAY_MILLIS = 500;
+    private static final long WRITE_SHUTDOWN_TIMEOUT_MILLIS = 5000;
+    // Sequence numbers are taken before commit, so a slow writer can commit below a version we already saw.
+    // Reads start below every version skipped over until it shows up, see ChangeCursor, re-applying a row is harmless.
+    // Each flush of a write-behind queue takes up to WRITE_BATCH_SIZE versions, so this alone wouldn't be enough.
+    private static final long CHANGES_OVERLAP = 64;
+    // a commit later than this is only read on the next full load, when the IDE restarts.
+    private static final long CHANGES_GAP_TIMEOUT_MILLIS = 5 * 60 * 1000;
+    private static final int CHANGES_MAX_GAPS = 10000;
+    private static final int CLASS_FILTER_MIN_INSERTIONS = 10000;
+    private static final double CLASS_FILTER_FALSE_POSITIVE_RATE = 0.01;
+
+    private ConnectionPool mConnectionPool;
+    private PainPointWriteQueue mWriteQueue;
+    private final PainPointCache mPainPointCache = new PainPointCache();
+    // null until the first full load, the filter can only rule classes out once it has seen every vote.
+    private volatile ClassIdBloomFilter mClassIdFilter = null;
+    // adds and rebuilds take turns, so a class id added while the filter is rebuilt isn't lost.
+    private final Object mClassIdFilterLock = new Object();
+    private final List<VoteListener> mVoteListeners = new CopyOnWriteArrayList<>();
+    private final ChangeCursor mChangeCursor = new ChangeCursor(CHANGES_OVERLAP, CHANGES_GAP_TIMEOUT_MILLIS, CHANGES_MAX_GAPS);
 
     public PainPointDomain() {
+        try {
+            mConnectionPool = new ConnectionPool(DB_DRIVER, DB_URL, DB_USER, DB_PASSWORD,
+                    POOL_MAX_SIZE, POOL_BORROW_TIMEOUT_MILLIS, POOL_IDLE_TIMEOUT_MILLIS,
+                    POOL_VALIDATION_INTERVAL_MILLIS, POOL_MAX_CACHED_STATEMENTS);
+        }
+        catch (ClassNotFoundException cnfex) {
+            PluginManager.getLogger().warn("ClassNotFoundException " + cnfex.getMessage());
+        }
 //        deletePainPointTable(); //TODO: don't do this dummy.
-        createPainPointTable();
+        mWriteQueue = new PainPointWriteQueue(this::writePainPoints, WRITE_BATCH_SIZE, WRITE_MAX_DELAY_MILLIS);
     }
 
-    private Connection getConnection() {
+    /**
+     * Borrow a pooled connection.  Hand it back with {@link #releaseConnection(PooledConnection, boolean)}.
+     * The first connection of the session brings the schema up to date.
+     *
+     * @return connection or null if the database can't be reached.
+     */
+    private PooledConnection getConnection() {
+        if (mConnectionPool == null) {
+            return null;
+        }
+        PooledConnection conn = null;
         try {
-            Class.forName("org.h2.Driver");
-            return DriverManager.getConnection("jdbc:h2:tcp://localhost/~/test", "sa", "");
+            conn = mConnectionPool.borrow();
+            SchemaMigrator.migrateOnce(DB_URL, conn.getConnection(), PainPointMigrations.MIGRATIONS);
+            return conn;
         }
         catch (SQLException sqlEx) {
             PluginManager.getLogger().warn("SQLException "+sqlEx.getMessage());
-        }
-        catch (ClassNotFoundException cnfex) {
-            PluginManager.getLogger().warn("ClassNotFoundException " + cnfex.getMessage());
+            if (conn != null) {
+                mConnectionPool.invalidate(conn);
+            }
         }
         return null;
     }
 
-    private boolean hasPainPointForUser(Integer classId, String userName) {
-
-        List<PainPoint> painPointsForClass = getPainPointsCacheForClassId(classId);
-        for(PainPoint painPoint : painPointsForClass) {
-            if(painPoint.getUserName().equalsIgnoreCase(userName)) {
-                return true;
-            }
+    private void releaseConnection(PooledConnection conn, boolean failed) {
+        if (failed) {
+            mConnectionPool.invalidate(conn);
+        }
+        else {
+            mConnectionPool.release(conn);
         }
+    }
 
-        return false;
+    /**
+     * Write the queued votes and close the pooled connections, the domain can't reach the database afterwards.
+     */
+    public void dispose() {
+        if (!mWriteQueue.shutdown(WRITE_SHUTDOWN_TIMEOUT_MILLIS)) {
+            PluginManager.getLogger().warn("PainPointDomain disposed with unwritten votes");
+        }
+        if (mConnectionPool != null) {
+            mConnectionPool.close();
+        }
     }
 
     // For testing purposes, early on.  Not "intended" for future use.
     private void deletePainPointTable() {
-        try {
-            Connection conn = getConnection();
-            if (conn != null) {
-                Statement stat = conn.createStatement();
+        PooledConnection conn = getConnection();
+        if (conn != null) {
+            boolean failed = false;
+            try {
+                Statement stat = conn.getConnection().createStatement();
                 stat.execute("DROP TABLE " + mTableName);
                 stat.close();
-                conn.close();
+            }
+            catch (SQLException ex) {
+                failed = true;
+                PluginManager.getLogger().warn("deletePainPointTable SQLException " + ex.getMessage());
+            }
+            finally {
+                releaseConnection(conn, failed);
             }
         }
-        catch (SQLException ex) {
-            PluginManager.getLogger().warn("deletePainPointTable SQLException " + ex.getMessage());
+    }
+
+    /**
+     * Get every vote, keyed by pain point id.
+     * The first query loads the whole table, later ones only apply the rows changed since, see {@link #getChangesSince(long)}.
+     *
+     * @param queryForData true to bring the cache up to date with the database first.
+     * @return cached votes, or null if they were never loaded.
+     */
+    public Map<Integer, PainPoint> getPainPointMap(boolean queryForData) throws SQLException {
+
+        if(queryForData) {
+            if(!mPainPointCache.isLoaded() || mChangeCursor.getLastSeenVersion() < 0) {
+                loadPainPointMap();
+            }
+            else {
+                getChangesSince(mChangeCursor.getReadFrom(System.currentTimeMillis()));
+            }
         }
+        return mPainPointCache.isLoaded() ? mPainPointCache.asMap() : null;
     }
 
-    private void createPainPointTable() {
-        try {
-            Connection conn = getConnection();
-            if (conn != null) {
-                Statement stat = conn.createStatement();
-                stat.execute("CREATE TABLE " + mTableName + " (id INTEGER PRIMARY KEY, classid INT NOT NULL, username VARCHAR(256), thumbsdown BOOLEAN)");
-                stat.close();
-                conn.close();
+    private void loadPainPointMap() throws SQLException {
+        PooledConnection conn = getConnection();
+        if (conn != null) {
+            boolean failed = true;
+            try {
+                PreparedStatement stat = conn.prepare(SELECT_ALL_SQL);
+                ResultSet resultSet = stat.executeQuery();
+                Map<Integer, PainPoint> painPointMap = PainPointFactory.createPainPointMap(resultSet);
+                resultSet.close();
+                long lastSeenVersion = 0;
+                for (PainPoint painPoint : painPointMap.values()) {
+                    lastSeenVersion = Math.max(lastSeenVersion, painPoint.getVersion());
+                }
+                mPainPointCache.load(painPointMap.values());
+                // votes still in the write-behind queue are newer than the table.
+                List<PainPoint> pending = mWriteQueue.getPending();
+                mPainPointCache.putAll(pending);
+                synchronized (mClassIdFilterLock) {
+                    mClassIdFilter = createClassIdFilter(painPointMap.values(), pending);
+                }
+                mChangeCursor.reset(lastSeenVersion);
+                failed = false;
+
+                Set<Integer> classIds = new LinkedHashSet<>();
+                for (PainPoint painPoint : painPointMap.values()) {
+                    classIds.add(painPoint.getClassId());
+                }
+                fireVotesChanged(classIds);
+            }
+            finally {
+                releaseConnection(conn, failed);
             }
         }
-        catch (SQLException ex) {
-            PluginManager.getLogger().debug("SQLException " + ex.getMessage());
+    }
+
+    /**
+     * Load the votes written since a change sequence number and apply them to the cache.
+     *
+     * @param version change sequence number, the result only has rows with a higher one.
+     * @return the changed votes, oldest change first.
+     */
+    public List<PainPoint> getChangesSince(long version) throws SQLException {
+        List<PainPoint> changes = new ArrayList<>();
+        PooledConnection conn = getConnection();
+        if (conn != null) {
+            boolean failed = true;
+            try {
+                PreparedStatement stat = conn.prepare(SELECT_CHANGES_SQL);
+                stat.setLong(1, version);
+                ResultSet resultSet = stat.executeQuery();
+                changes = PainPointFactory.createPainPoints(resultSet);
+                resultSet.close();
+                failed = false;
+            }
+            finally {
+                releaseConnection(conn, failed);
+            }
+        }
+
+        List<Long> versions = new ArrayList<>(changes.size());
+        Set<Integer> changedClassIds = new LinkedHashSet<>();
+        for (PainPoint painPoint : changes) {
+            if (mPainPointCache.put(painPoint)) {
+                changedClassIds.add(painPoint.getClassId());
+            }
+            addToClassIdFilter(painPoint.getClassId());
+            versions.add(painPoint.getVersion());
         }
+        changedClassIds.addAll(mPainPointCache.putAll(mWriteQueue.getPending()));
+        mChangeCursor.seen(versions, System.currentTimeMillis());
+        fireVotesChanged(changedClassIds);
+        return changes;
     }
 
-    public Map<Integer, PainPoint> getPainPointMap(boolean queryForData) throws SQLException {
+    private ClassIdBloomFilter createClassIdFilter(Collection<PainPoint> painPoints, Collection<PainPoint> pending) {
+        // leave room to grow, the filter is rebuilt bigger once it takes more class ids than this.
+        int expectedInsertions = Math.max(CLASS_FILTER_MIN_INSERTIONS, painPoints.size() * 2);
+        ClassIdBloomFilter classIdFilter = new ClassIdBloomFilter(expectedInsertions, CLASS_FILTER_FALSE_POSITIVE_RATE);
+        for (PainPoint painPoint : painPoints) {
+            classIdFilter.add(painPoint.getClassId());
+        }
+        for (PainPoint painPoint : pending) {
+            classIdFilter.add(painPoint.getClassId());
+        }
+        return classIdFilter;
+    }
 
-        if(queryForData) {
-            Map<Integer, PainPoint> painPointMap = null;
-            Connection conn = getConnection();
-            if (conn != null) {
-                Statement stat = conn.createStatement();
-                ResultSet resultSet = stat.executeQuery("SELECT * FROM " + mTableName);
-                painPointMap = PainPointFactory.createPainPointMap(resultSet);
-                if(painPointMap != null && !painPointMap.isEmpty()) {
-                    mPainPointMapCache = painPointMap;
-                }
-                stat.close();
-                conn.close();
+    private void addToClassIdFilter(Integer classId) {
+        synchronized (mClassIdFilterLock) {
+            ClassIdBloomFilter classIdFilter = mClassIdFilter;
+            if (classIdFilter == null) {
+                return;
+            }
+            classIdFilter.add(classId);
+            // deltas never reload the table, so the filter is rebuilt from the cache before it gets too full to rule classes out.
+            if (classIdFilter.isOverfilled()) {
+                mClassIdFilter = createClassIdFilter(mPainPointCache.asMap().values(), mWriteQueue.getPending());
+                PluginManager.getLogger().debug("Rebuilt the class id filter after " + classIdFilter.getInsertionCount() + " class ids");
             }
         }
-        return mPainPointMapCache;
     }
 
-    public void insertPainPoint(PainPoint painPoint) {
+    /**
+     * Could the class have votes.  Answers from memory, without a query.
+     *
+     * @param classId class to check.
+     * @return false if the class definitely has no votes, true if it might or the votes were never loaded.
+     */
+    public boolean mightHaveVotes(Integer classId) {
+        ClassIdBloomFilter classIdFilter = mClassIdFilter;
+        return classIdFilter == null || classIdFilter.mightContain(classId);
+    }
+
+    /**
+     * Stamp of the last change to a class's votes seen by this client, from a local vote or a load.
+     *
+     * @param classId class to look up.
+     * @return a stamp that differs after every change to the class.
+     */
+    public long getClassStamp(Integer classId) {
+        return mPainPointCache.getClassStamp(classId);
+    }
+
+    public void addVoteListener(VoteListener voteListener) {
+        mVoteListeners.add(voteListener);
+    }
+
+    public void removeVoteListener(VoteListener voteListener) {
+        mVoteListeners.remove(voteListener);
+    }
+
+    private void fireVotesChanged(Collection<Integer> classIds) {
+        if (classIds.isEmpty()) {
+            return;
+        }
+        for (VoteListener voteListener : mVoteListeners) {
+            voteListener.votesChanged(classIds);
+        }
+    }
+
+    /**
+     * Highest change sequence number applied to the cache.
+     *
+     * @return sequence number, or -1 before the first load.
+     */
+    public long getLastSeenVersion() {
+        return mChangeCursor.getLastSeenVersion();
+    }
+
+    /**
+     * Insert the vote, or update the user's existing vote for the class.
+     */
+    public void upsertPainPoint(PainPoint painPoint) {
+        List<PainPoint> painPoints = new ArrayList<>();
+        painPoints.add(painPoint);
         try {
-            Connection conn = getConnection();
-            if (conn != null) {
-                Statement stat = conn.createStatement();
-                String insertTableSQL = "INSERT INTO " + mTableName +
-                        "("+FIELDS+") " +
-                        "VALUES(" + painPoint.toSQLValues() + ")";
-                stat.execute(insertTableSQL);
-                stat.close();
-                conn.close();
-            }
+            writePainPoints(painPoints);
         }
         catch (SQLException ex) {
             PluginManager.getLogger().warn("SQLException " + ex.getMessage());
@@ -121,114 +348,346 @@ public class PainPointDomain {
     public PainPoint getPainPointForId(boolean queryForData, Integer painPointId) {
 
         PainPoint painPoint = null;
-        if(queryForData && mPainPointMapCache != null) {
-            return mPainPointMapCache.get(painPointId);
+        if(queryForData && mPainPointCache.isLoaded()) {
+            return mPainPointCache.get(painPointId);
         }
         else {
             if(queryForData) {
-                Connection conn = getConnection();
+                PooledConnection conn = getConnection();
                 if (conn != null) {
+                    boolean failed = false;
                     try {
-                        Statement stat = conn.createStatement();
-                        ResultSet resultSet = stat.executeQuery("SELECT * FROM " + mTableName + " WHERE id = " + painPointId);
-                        painPoint = PainPointFactory.createPainPoint(resultSet);
-                        addPainPoint(painPoint);
+                        PreparedStatement stat = conn.prepare(SELECT_BY_ID_SQL);
+                        stat.setInt(1, painPointId);
+                        ResultSet resultSet = stat.executeQuery();
+                        if (resultSet.next()) {
+                            painPoint = PainPointFactory.createPainPoint(resultSet);
+                        }
+                        resultSet.close();
+                        mPainPointCache.put(painPoint);
                         PluginManager.getLogger().debug("getPainPointForId size: " + painPoint);
-
-                        stat.close();
-                        conn.close();
                     }
                     catch (SQLException ex) {
+                        failed = true;
                         PluginManager.getLogger().warn("SQLException " + ex.getMessage());
                     }
+                    finally {
+                        releaseConnection(conn, failed);
+                    }
                 }
             }
         }
         return painPoint;
     }
 
-    private List<PainPoint> getPainPointsCacheForClassId(Integer classId) {
+    public List<PainPoint> getPainPointsForClassId(boolean queryForData, Integer classId) {
+
         List<PainPoint> painPointList = new ArrayList<>();
-        if(mPainPointMapCache != null) {
-            Iterator it = mPainPointMapCache.entrySet().iterator();
-            while (it.hasNext()) {
-                Map.Entry pair = (Map.Entry) it.next();
-                System.out.println(pair.getKey() + " = " + pair.getValue());
+        if(!queryForData && mPainPointCache.isLoaded()) {
+            painPointList = mPainPointCache.getForClassId(classId);
+        }
+        else if(queryForData && !mightHaveVotes(classId)) {
+            PluginManager.getLogger().debug("getPainPointsForClassId skipped, no votes for " + classId);
+        }
+        else {
+            if(queryForData) {
+                PooledConnection conn = getConnection();
+                if (conn != null) {
+                    boolean failed = false;
+                    try {
+                        PreparedStatement stat = conn.prepare(SELECT_BY_CLASS_ID_SQL);
+                        stat.setInt(1, classId);
+                        ResultSet resultSet = stat.executeQuery();
+                        painPointList = PainPointFactory.createPainPoints(resultSet);
+                        resultSet.close();
 
-                PainPoint painPoint = (PainPoint) pair.getValue();
-                if (painPoint.getClassId().equals(classId)) {
-                    painPointList.add(painPoint);
+                        PluginManager.getLogger().debug("getPainPointsForClassId size: " + painPointList.size());
+                    }
+                    catch (SQLException ex) {
+                        failed = true;
+                        PluginManager.getLogger().warn("SQLException " + ex.getMessage());
+                    }
+                    finally {
+                        releaseConnection(conn, failed);
+                    }
                 }
-                it.remove(); // avoids a ConcurrentModificationException
+                applyPendingForClassId(painPointList, classId);
             }
         }
         return painPointList;
     }
 
-    private void addPainPoint(PainPoint painPoint) {
+    /**
+     * Get the votes for several classes in one round trip.
+     *
+     * @param classIds classes to look up.
+     * @return votes for every requested class, with votes not yet written applied, empty lists for classes without votes.
+     */
+    public Map<Integer, List<PainPoint>> getPainPointsForClassIds(Collection<Integer> classIds) {
+        Map<Integer, List<PainPoint>> painPointsByClassId = new HashMap<>();
+        List<Integer> toQuery = new ArrayList<>();
+        for (Integer classId : classIds) {
+            if (!painPointsByClassId.containsKey(classId)) {
+                painPointsByClassId.put(classId, new ArrayList<>());
+                if (mightHaveVotes(classId)) {
+                    toQuery.add(classId);
+                }
+            }
+        }
 
-        if(painPoint != null) {
-            mPainPointMapCache.put(painPoint.getId(), painPoint);
+        if (!toQuery.isEmpty()) {
+            PooledConnection conn = getConnection();
+            if (conn != null) {
+                boolean failed = false;
+                try {
+                    PreparedStatement stat = conn.prepare(SELECT_BY_CLASS_IDS_SQL);
+                    stat.setObject(1, toQuery.toArray(new Integer[toQuery.size()]));
+                    ResultSet resultSet = stat.executeQuery();
+                    for (PainPoint painPoint : PainPointFactory.createPainPoints(resultSet)) {
+                        painPointsByClassId.get(painPoint.getClassId()).add(painPoint);
+                    }
+                    resultSet.close();
+                }
+                catch (SQLException ex) {
+                    failed = true;
+                    PluginManager.getLogger().warn("SQLException " + ex.getMessage());
+                }
+                finally {
+                    releaseConnection(conn, failed);
+                }
+            }
         }
 
+        Map<Integer, List<PainPoint>> pendingByClassId = getPendingByClassId();
+        for (Map.Entry<Integer, List<PainPoint>> entry : pendingByClassId.entrySet()) {
+            List<PainPoint> painPointList = painPointsByClassId.get(entry.getKey());
+            if (painPointList != null) {
+                applyPending(painPointList, entry.getValue());
+            }
+        }
+        return painPointsByClassId;
     }
 
-    public List<PainPoint> getPainPointsForClassId(boolean queryForData, Integer classId) {
+    /**
+     * Get the vote totals for several classes in one round trip.
+     *
+     * @param classIds classes to look up.
+     * @return totals for every requested class, empty totals for classes without votes.
+     */
+    public Map<Integer, ClassAggregate> getAggregatesForClassIds(Collection<Integer> classIds) {
+        Map<Integer, ClassAggregate> aggregates = new HashMap<>();
+        Map<Integer, List<PainPoint>> pendingByClassId = getPendingByClassId();
+        List<Integer> withPending = new ArrayList<>();
+        List<Integer> toQuery = new ArrayList<>();
+        for (Integer classId : classIds) {
+            if (aggregates.containsKey(classId)) {
+                continue;
+            }
+            aggregates.put(classId, ClassAggregate.empty(classId));
+            if (pendingByClassId.containsKey(classId)) {
+                withPending.add(classId);
+            }
+            else if (mightHaveVotes(classId)) {
+                toQuery.add(classId);
+            }
+        }
 
-        List<PainPoint> painPointList = new ArrayList<>();
-        if(!queryForData && mPainPointMapCache != null) {
-            painPointList = getPainPointsCacheForClassId(classId);
+        if (!withPending.isEmpty()) {
+            // the aggregate rows don't include these yet, total the votes instead.
+            for (Map.Entry<Integer, List<PainPoint>> entry : getPainPointsForClassIds(withPending).entrySet()) {
+                aggregates.put(entry.getKey(), PainPointFactory.createClassAggregate(entry.getKey(), entry.getValue()));
+            }
         }
-        else {
-            if(queryForData) {
-                Map<Integer, PainPoint> painPointMap = null;
-                Connection conn = getConnection();
-                if (conn != null) {
-                    try {
-                        Statement stat = conn.createStatement();
-                        ResultSet resultSet = stat.executeQuery("SELECT * FROM " + mTableName + " WHERE classid = " + classId);
-                        painPointList = PainPointFactory.createPainPoints(resultSet);
 
-                        PluginManager.getLogger().debug("getPainPointsForClassId size: " + painPointList.size());
+        if (!toQuery.isEmpty()) {
+            PooledConnection conn = getConnection();
+            if (conn != null) {
+                boolean failed = false;
+                try {
+                    PreparedStatement stat = conn.prepare(SELECT_AGGREGATES_BY_CLASS_IDS_SQL);
+                    stat.setObject(1, toQuery.toArray(new Integer[toQuery.size()]));
+                    ResultSet resultSet = stat.executeQuery();
+                    while (resultSet.next()) {
+                        ClassAggregate classAggregate = PainPointFactory.createClassAggregate(resultSet);
+                        aggregates.put(classAggregate.getClassId(), classAggregate);
+                    }
+                    resultSet.close();
+                }
+                catch (SQLException ex) {
+                    failed = true;
+                    PluginManager.getLogger().warn("SQLException " + ex.getMessage());
+                }
+                finally {
+                    releaseConnection(conn, failed);
+                }
+            }
+        }
+        return aggregates;
+    }
 
-                        stat.close();
-                        conn.close();
+    private Map<Integer, List<PainPoint>> getPendingByClassId() {
+        Map<Integer, List<PainPoint>> pendingByClassId = new HashMap<>();
+        for (PainPoint pending : mWriteQueue.getPending()) {
+            List<PainPoint> pendingForClass = pendingByClassId.get(pending.getClassId());
+            if (pendingForClass == null) {
+                pendingForClass = new ArrayList<>();
+                pendingByClassId.put(pending.getClassId(), pendingForClass);
+            }
+            pendingForClass.add(pending);
+        }
+        return pendingByClassId;
+    }
 
-                    }
-                    catch (SQLException ex) {
-                        PluginManager.getLogger().warn("SQLException " + ex.getMessage());
-                    }
+    private List<PainPoint> getPendingForClassId(Integer classId) {
+        List<PainPoint> pendingForClass = new ArrayList<>();
+        for (PainPoint pending : mWriteQueue.getPending()) {
+            if (pending.getClassId().equals(classId)) {
+                pendingForClass.add(pending);
+            }
+        }
+        return pendingForClass;
+    }
+
+    private void applyPendingForClassId(List<PainPoint> painPointList, Integer classId) {
+        applyPending(painPointList, getPendingForClassId(classId));
+    }
+
+    private static void applyPending(List<PainPoint> painPointList, List<PainPoint> pendingVotes) {
+        for (PainPoint pending : pendingVotes) {
+            boolean replaced = false;
+            for (int i = 0; i < painPointList.size(); i++) {
+                if (painPointList.get(i).getId().equals(pending.getId())) {
+                    painPointList.set(i, pending);
+                    replaced = true;
                 }
             }
+            if (!replaced) {
+                painPointList.add(pending);
+            }
         }
-        return painPointList;
     }
 
-    private void updatePainPoint(PainPoint painPoint) {
+    /**
+     * Write a batch of votes in one transaction, as a single MERGE batch,
+     * and bring the aggregate rows of the touched classes up to date in the same transaction.
+     * Called on the write-behind thread.
+     */
+    private void writePainPoints(List<PainPoint> painPoints) throws SQLException {
+        PooledConnection conn = getConnection();
+        if (conn == null) {
+            throw new SQLException("No connection to write " + painPoints.size() + " votes");
+        }
+        boolean failed = true;
+        Connection connection = conn.getConnection();
         try {
-            Connection conn = getConnection();
-            if (conn != null) {
-                Statement stat = conn.createStatement();
-                String updateTableSQL = "UPDATE " + mTableName + " SET thumbsdown = " + painPoint.isThumbsDown() + " WHERE id = " +painPoint.getId();
-                stat.execute(updateTableSQL);
-                stat.close();
-                conn.close();
+            connection.setAutoCommit(false);
+            PreparedStatement merge = conn.prepare(MERGE_SQL);
+            for (PainPoint painPoint : painPoints) {
+                PainPointFactory.bindPainPoint(merge, painPoint);
+                merge.addBatch();
             }
+            merge.executeBatch();
+
+            Set<Integer> classIds = new LinkedHashSet<>();
+            for (PainPoint painPoint : painPoints) {
+                classIds.add(painPoint.getClassId());
+            }
+            refreshAggregates(conn, classIds);
+            connection.commit();
+            failed = false;
         }
-        catch (SQLException ex) {
-            PluginManager.getLogger().warn("SQLException " + ex.getMessage());
+        finally {
+            if (failed) {
+                try {
+                    connection.rollback();
+                }
+                catch (SQLException ex) {
+                    PluginManager.getLogger().debug("rollback SQLException " + ex.getMessage());
+                }
+            }
+            else {
+                connection.setAutoCommit(true);
+            }
+            releaseConnection(conn, failed);
+        }
+    }
+
+    private void refreshAggregates(PooledConnection conn, Collection<Integer> classIds) throws SQLException {
+        PreparedStatement refresh = conn.prepare(REFRESH_AGGREGATE_FOR_CLASS_ID_SQL);
+        for (Integer classId : classIds) {
+            refresh.setInt(1, classId);
+            refresh.addBatch();
         }
+        refresh.executeBatch();
     }
 
+    /**
+     * Get the vote totals for a class, one small row instead of every vote.
+     *
+     * @param classId class to look up.
+     * @return totals, empty if nobody voted on the class or the database can't be reached.
+     */
+    public ClassAggregate getAggregateForClassId(Integer classId) {
+        List<PainPoint> pending = getPendingForClassId(classId);
+        if (!pending.isEmpty()) {
+            // the aggregate row doesn't include these yet, total the votes instead.
+            return PainPointFactory.createClassAggregate(classId, getPainPointsForClassId(true, classId));
+        }
+
+        ClassAggregate classAggregate = ClassAggregate.empty(classId);
+        if (!mightHaveVotes(classId)) {
+            return classAggregate;
+        }
+        PooledConnection conn = getConnection();
+        if (conn != null) {
+            boolean failed = false;
+            try {
+                PreparedStatement stat = conn.prepare(SELECT_AGGREGATE_BY_CLASS_ID_SQL);
+                stat.setInt(1, classId);
+                ResultSet resultSet = stat.executeQuery();
+                if (resultSet.next()) {
+                    classAggregate = PainPointFactory.createClassAggregate(resultSet);
+                }
+                resultSet.close();
+            }
+            catch (SQLException ex) {
+                failed = true;
+                PluginManager.getLogger().warn("SQLException " + ex.getMessage());
+            }
+            finally {
+                releaseConnection(conn, failed);
+            }
+        }
+        return classAggregate;
+    }
 
+    /**
+     * Record a vote.  The cache sees it right away, the database once the write-behind queue flushes.
+     */
     public void addOrUpdateForClass(Integer classId, String userName, boolean painValue) {
         Integer painPointId = DataModelUtil.generatePainPointId(classId, userName);
         PainPoint painPoint = new PainPoint(painPointId, classId, userName, painValue);
-        if(hasPainPointForUser(classId, userName)) {
-            updatePainPoint(painPoint);
+        boolean changed = mPainPointCache.put(painPoint);
+        addToClassIdFilter(classId);
+        mWriteQueue.enqueue(painPoint);
+        if (changed) {
+            fireVotesChanged(Collections.singletonList(classId));
         }
-        else {
-            insertPainPoint(painPoint);
+    }
+
+    /**
+     * Write every queued vote now and wait for it, for tests and shutdown.
+     *
+     * @param timeoutMillis longest time to wait.
+     * @return true if every queued vote was written.
+     */
+    public boolean flushWrites(long timeoutMillis) {
+        try {
+            return mWriteQueue.flush(timeoutMillis);
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
         }
     }
 }
@@ -0,0 +1,33 @@
+package painpoint.domain.painpoint;
+
+import painpoint.domain.schema.Migration;
+import painpoint.domain.schema.SqlMigration;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The PainPoint schema, one migration per change.  Add new steps at the end, never edit an applied one.
+ * Every step uses IF NOT EXISTS, databases created before the schema was versioned already have some of them.
+ */
+public class PainPointMigrations {
+
+    public static final List<Migration> MIGRATIONS = Collections.unmodifiableList(Arrays.<Migration>asList(
+            new SqlMigration(1, "Create the PainPoint table",
+                    "CREATE TABLE IF NOT EXISTS " + PainPointDomain.mTableName
+                            + " (id INTEGER PRIMARY KEY, classid INT NOT NULL, username VARCHAR(256), thumbsdown BOOLEAN)"),
+            // Backs the MERGE key, and with classid leading it also serves the "WHERE classid = ?" lookups.
+            new SqlMigration(2, "Unique vote per user and class",
+                    "ALTER TABLE " + PainPointDomain.mTableName + " ADD CONSTRAINT IF NOT EXISTS "
+                            + PainPointDomain.mTableName + "_classid_username UNIQUE (classid, username)"),
+            new SqlMigration(3, "Per-class vote totals",
+                    "CREATE TABLE IF NOT EXISTS " + PainPointDomain.mAggregateTableName
+                            + " (classid INT PRIMARY KEY, thumbs_down_count INT NOT NULL, voter_count INT NOT NULL, last_updated TIMESTAMP NOT NULL)",
+                    PainPointDomain.REFRESH_ALL_AGGREGATES_SQL),
+            new SqlMigration(4, "Change sequence for incremental loads",
+                    "CREATE SEQUENCE IF NOT EXISTS " + PainPointDomain.mVersionSequenceName,
+                    "ALTER TABLE " + PainPointDomain.mTableName + " ADD COLUMN IF NOT EXISTS version BIGINT DEFAULT 0 NOT NULL",
+                    "CREATE INDEX IF NOT EXISTS " + PainPointDomain.mTableName + "_version ON " + PainPointDomain.mTableName + " (version)")
+    ));
+}
@@ -0,0 +1,250 @@
+package painpoint.domain.painpoint;
+
+import com.intellij.ide.plugins.PluginManager;
+import painpoint.domain.painpoint.model.PainPoint;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Write-behind queue for pain point votes.
+ * Votes are coalesced by pain point id, so only the last toggle of a vote is written,
+ * and a background thread writes them in batches once enough are pending or the oldest has waited long enough.
+ */
+public class PainPointWriteQueue {
+
+    /**
+     * Writes one batch of coalesced votes to the store.
+     */
+    public interface BatchWriter {
+        void writeBatch(List<PainPoint> painPoints) throws SQLException;
+    }
+
+    private static final long RETRY_DELAY_MILLIS = 1000;
+
+    private final Object mLock = new Object();
+    private final Map<Integer, PainPoint> mPending = new LinkedHashMap<>();
+    // the batch being written, still counted as pending until it is in the table or back in mPending.
+    private final Map<Integer, PainPoint> mInFlight = new LinkedHashMap<>();
+    private final BatchWriter mBatchWriter;
+    private final int mBatchSize;
+    private final long mMaxDelayMillis;
+    private final Thread mWorker;
+    private long mOldestPendingMillis;
+    private long mEnqueuedCount;
+    private long mWrittenCount;
+    private boolean mFlushRequested;
+    private boolean mShutdown;
+
+    /**
+     * Create the queue and start its worker thread.
+     *
+     * @param batchWriter    writes the batches.
+     * @param batchSize      pending votes that trigger a write right away.
+     * @param maxDelayMillis longest a vote waits before it is written.
+     */
+    public PainPointWriteQueue(BatchWriter batchWriter, int batchSize, long maxDelayMillis) {
+        mBatchWriter = batchWriter;
+        mBatchSize = batchSize;
+        mMaxDelayMillis = maxDelayMillis;
+        mWorker = new Thread(this::runWorker, "PainPoint write-behind");
+        mWorker.setDaemon(true);
+        mWorker.start();
+    }
+
+    /**
+     * Queue a vote.  Replaces a pending vote with the same pain point id.
+     *
+     * @param painPoint vote to write.
+     */
+    public void enqueue(PainPoint painPoint) {
+        synchronized (mLock) {
+            if (mShutdown) {
+                PluginManager.getLogger().warn("PainPointWriteQueue is shut down, dropping vote " + painPoint.getId());
+                return;
+            }
+            if (mPending.isEmpty()) {
+                mOldestPendingMillis = System.currentTimeMillis();
+            }
+            // remove first so the map keeps the order of the latest toggle.
+            mPending.remove(painPoint.getId());
+            mPending.put(painPoint.getId(), painPoint);
+            mEnqueuedCount++;
+            mLock.notifyAll();
+        }
+    }
+
+    /**
+     * Votes queued or being written but not yet committed, the newest vote for each pain point id.
+     *
+     * @return copy of the pending votes.
+     */
+    public List<PainPoint> getPending() {
+        synchronized (mLock) {
+            Map<Integer, PainPoint> pending = new LinkedHashMap<>(mInFlight);
+            pending.putAll(mPending);
+            return new ArrayList<>(pending.values());
+        }
+    }
+
+    /**
+     * Write everything queued so far and wait for it.
+     *
+     * @param timeoutMillis longest time to wait.
+     * @return true if every vote queued before the call was written.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public boolean flush(long timeoutMillis) throws InterruptedException {
+        synchronized (mLock) {
+            mFlushRequested = true;
+            mLock.notifyAll();
+            return awaitWritten(mEnqueuedCount, timeoutMillis);
+        }
+    }
+
+    /**
+     * Wait for the votes queued so far to be written, on the normal size or time trigger.
+     *
+     * @param timeoutMillis longest time to wait.
+     * @return true if every vote queued before the call was written.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public boolean await(long timeoutMillis) throws InterruptedException {
+        synchronized (mLock) {
+            return awaitWritten(mEnqueuedCount, timeoutMillis);
+        }
+    }
+
+    /**
+     * Flush the pending votes and stop the worker.  Votes queued afterwards are dropped.
+     *
+     * @param timeoutMillis longest time to wait for the last write.
+     * @return true if every pending vote was written.
+     */
+    public boolean shutdown(long timeoutMillis) {
+        synchronized (mLock) {
+            mShutdown = true;
+            mFlushRequested = true;
+            mLock.notifyAll();
+        }
+        try {
+            mWorker.join(timeoutMillis);
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (mLock) {
+            return mPending.isEmpty() && mWrittenCount == mEnqueuedCount;
+        }
+    }
+
+    // Called holding mLock.
+    private boolean awaitWritten(long target, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (mWrittenCount < target) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0 || !mWorker.isAlive()) {
+                return false;
+            }
+            mLock.wait(remaining);
+        }
+        return true;
+    }
+
+    private void runWorker() {
+        while (true) {
+            List<PainPoint> batch;
+            long batchEnqueuedCount;
+            synchronized (mLock) {
+                try {
+                    waitForBatch();
+                }
+                catch (InterruptedException ex) {
+                    return;
+                }
+                if (mPending.isEmpty()) {
+                    // only reached when shutting down.
+                    return;
+                }
+                batch = new ArrayList<>(mPending.values());
+                batchEnqueuedCount = mEnqueuedCount;
+                mInFlight.putAll(mPending);
+                mPending.clear();
+                mFlushRequested = false;
+            }
+
+            boolean written = write(batch);
+
+            synchronized (mLock) {
+                if (written) {
+                    mWrittenCount = batchEnqueuedCount;
+                }
+                else {
+                    // kept even when shutting down, so shutdown reports them as not written.
+                    requeue(batch);
+                }
+                mInFlight.clear();
+                mLock.notifyAll();
+            }
+
+            if (!written) {
+                if (mShutdown) {
+                    return;
+                }
+                try {
+                    Thread.sleep(RETRY_DELAY_MILLIS);
+                }
+                catch (InterruptedException ex) {
+                    return;
+                }
+            }
+        }
+    }
+
+    // Called holding mLock.
+    private void waitForBatch() throws InterruptedException {
+        while (true) {
+            if (mShutdown) {
+                return;
+            }
+            if (!mPending.isEmpty()) {
+                long waited = System.currentTimeMillis() - mOldestPendingMillis;
+                if (mFlushRequested || mPending.size() >= mBatchSize || waited >= mMaxDelayMillis) {
+                    return;
+                }
+                mLock.wait(mMaxDelayMillis - waited);
+            }
+            else {
+                mLock.wait();
+            }
+        }
+    }
+
+    // Called holding mLock.  Votes queued while the batch was in flight are newer, so they win.
+    private void requeue(List<PainPoint> batch) {
+        Map<Integer, PainPoint> newer = new LinkedHashMap<>(mPending);
+        mPending.clear();
+        for (PainPoint painPoint : batch) {
+            mPending.put(painPoint.getId(), painPoint);
+        }
+        for (PainPoint painPoint : newer.values()) {
+            mPending.remove(painPoint.getId());
+            mPending.put(painPoint.getId(), painPoint);
+        }
+        mOldestPendingMillis = System.currentTimeMillis();
+    }
+
+    private boolean write(List<PainPoint> batch) {
+        try {
+            mBatchWriter.writeBatch(batch);
+            return true;
+        }
+        catch (SQLException | RuntimeException ex) {
+            PluginManager.getLogger().warn("PainPointWriteQueue failed to write " + batch.size() + " votes: " + ex.getMessage());
+            return false;
+        }
+    }
+}
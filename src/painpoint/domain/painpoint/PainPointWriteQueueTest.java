@@ -0,0 +1,123 @@
+package painpoint.domain.painpoint;
+
+import org.junit.After;
+import org.junit.Test;
+import painpoint.domain.painpoint.model.PainPoint;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class PainPointWriteQueueTest {
+
+    private PainPointWriteQueue mWriteQueue;
+    private final List<List<PainPoint>> mWrittenBatches = new ArrayList<>();
+
+    @After
+    public void tearDown() throws Exception {
+        if (mWriteQueue != null) {
+            mWriteQueue.shutdown(1000);
+        }
+    }
+
+    @Test
+    public void testEnqueue_secondToggleReplacesFirst() throws Exception {
+
+        // GIVEN a queue that only writes when flushed.
+        mWriteQueue = new PainPointWriteQueue(this::record, 100, 60000);
+
+        // WHEN the same vote is toggled on and off again.
+        mWriteQueue.enqueue(new PainPoint(1, 10, "user", true));
+        mWriteQueue.enqueue(new PainPoint(1, 10, "user", false));
+
+        // THEN only the last toggle is pending and written.
+        assertEquals(1, mWriteQueue.getPending().size());
+        assertFalse(mWriteQueue.getPending().get(0).isThumbsDown());
+        assertTrue(mWriteQueue.flush(5000));
+        synchronized (mWrittenBatches) {
+            assertEquals(1, mWrittenBatches.size());
+            assertEquals(1, mWrittenBatches.get(0).size());
+            assertFalse(mWrittenBatches.get(0).get(0).isThumbsDown());
+        }
+    }
+
+    @Test
+    public void testFlush_waitsForTheWrite() throws Exception {
+
+        // GIVEN a queue with a slow store and a vote that would otherwise wait a minute.
+        mWriteQueue = new PainPointWriteQueue(batch -> {
+            sleep(200);
+            record(batch);
+        }, 100, 60000);
+        mWriteQueue.enqueue(new PainPoint(1, 10, "user", true));
+
+        // WHEN it is flushed.
+        boolean written = mWriteQueue.flush(5000);
+
+        // THEN flush returns only once the vote is in the store.
+        assertTrue(written);
+        synchronized (mWrittenBatches) {
+            assertEquals(1, mWrittenBatches.size());
+        }
+        assertTrue(mWriteQueue.getPending().isEmpty());
+    }
+
+    @Test
+    public void testWrite_failedBatchRequeuedBehindNewerToggle() throws Exception {
+
+        // GIVEN a store whose first write fails after the vote is in flight.
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch fail = new CountDownLatch(1);
+        mWriteQueue = new PainPointWriteQueue(batch -> {
+            if (writing.getCount() > 0) {
+                writing.countDown();
+                await(fail);
+                throw new SQLException("store down");
+            }
+            record(batch);
+        }, 1, 60000);
+        mWriteQueue.enqueue(new PainPoint(1, 10, "user", true));
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+
+        // WHEN the vote is toggled again while the failing write is in flight.
+        assertTrue(mWriteQueue.getPending().get(0).isThumbsDown());
+        mWriteQueue.enqueue(new PainPoint(1, 10, "user", false));
+        fail.countDown();
+
+        // THEN the failed vote is requeued without overwriting the newer toggle, which is what gets written.
+        assertTrue(mWriteQueue.flush(5000));
+        synchronized (mWrittenBatches) {
+            assertEquals(1, mWrittenBatches.size());
+            assertEquals(1, mWrittenBatches.get(0).size());
+            assertFalse(mWrittenBatches.get(0).get(0).isThumbsDown());
+        }
+    }
+
+    private void record(List<PainPoint> batch) {
+        synchronized (mWrittenBatches) {
+            mWrittenBatches.add(new ArrayList<>(batch));
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package painpoint.domain.painpoint;
+
+import java.util.Collection;
+
+/**
+ * Told when the votes of some classes change, from a local vote or from a load of other clients' votes.
+ * Called on whichever thread made the change.
+ */
+public interface VoteListener {
+
+    void votesChanged(Collection<Integer> classIds);
+}
@@ -0,0 +1,42 @@
+package painpoint.domain.painpoint.model;
+
+/**
+ * Per-class vote totals, one row of the PainPointAggregate table.
+ */
+public class ClassAggregate {
+
+    private Integer mClassId;
+    private int mThumbsDownCount;
+    private int mVoterCount;
+    private long mLastUpdatedMillis;
+
+    public ClassAggregate(Integer classId, int thumbsDownCount, int voterCount, long lastUpdatedMillis) {
+        mClassId = classId;
+        mThumbsDownCount = thumbsDownCount;
+        mVoterCount = voterCount;
+        mLastUpdatedMillis = lastUpdatedMillis;
+    }
+
+    /**
+     * Totals for a class nobody has voted on.
+     */
+    public static ClassAggregate empty(Integer classId) {
+        return new ClassAggregate(classId, 0, 0, 0);
+    }
+
+    public Integer getClassId() {
+        return mClassId;
+    }
+
+    public int getThumbsDownCount() {
+        return mThumbsDownCount;
+    }
+
+    public int getVoterCount() {
+        return mVoterCount;
+    }
+
+    public long getLastUpdatedMillis() {
+        return mLastUpdatedMillis;
+    }
+}
@@ -6,16 +6,21 @@ public class PainPoint {
     private Integer mPainPointId;
     private String mUserName;
     private boolean mThumbsDown;
+    private long mVersion;
 
     public PainPoint(Integer painPointId, Integer classId, String userName, boolean thumbsDown) {
+        this(painPointId, classId, userName, thumbsDown, 0);
+    }
+
+    /**
+     * @param version change sequence number the row was last written with, 0 if it isn't stored yet.
+     */
+    public PainPoint(Integer painPointId, Integer classId, String userName, boolean thumbsDown, long version) {
         mClassId = classId;
         mPainPointId = painPointId;
         mUserName = userName;
         mThumbsDown = thumbsDown;
-    }
-
-    public String toSQLValues() {
-        return getPainPointId() + "," + getClassId()+", '"+getUserName()+"', '"+isThumbsDown()+"'";
+        mVersion = version;
     }
 
     public Integer getClassId() {
@@ -34,6 +39,10 @@ public class PainPoint {
         return mThumbsDown;
     }
 
+    public long getVersion() {
+        return mVersion;
+    }
+
     public Integer getId() {
         return getPainPointId();
     }
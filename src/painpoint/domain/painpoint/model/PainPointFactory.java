@@ -1,7 +1,9 @@
 package painpoint.domain.painpoint.model;
 
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -14,8 +16,42 @@ public class PainPointFactory {
         Integer classFileId = resultSet.getInt("classId");
         String username = resultSet.getString("username");
         Boolean thumbsDown = resultSet.getBoolean("thumbsdown");
+        long version = resultSet.getLong("version");
 
-        return new PainPoint(painPointId, classFileId, username, thumbsDown);
+        return new PainPoint(painPointId, classFileId, username, thumbsDown, version);
+    }
+
+    public static ClassAggregate createClassAggregate(ResultSet resultSet) throws SQLException {
+        Integer classFileId = resultSet.getInt("classid");
+        int thumbsDownCount = resultSet.getInt("thumbs_down_count");
+        int voterCount = resultSet.getInt("voter_count");
+        Timestamp lastUpdated = resultSet.getTimestamp("last_updated");
+
+        return new ClassAggregate(classFileId, thumbsDownCount, voterCount, lastUpdated != null ? lastUpdated.getTime() : 0);
+    }
+
+    /**
+     * Totals for the votes of one class, for votes that haven't reached the aggregate table yet.
+     */
+    public static ClassAggregate createClassAggregate(Integer classId, List<PainPoint> painPoints) {
+        int thumbsDownCount = 0;
+        for (PainPoint painPoint : painPoints) {
+            if (painPoint.isThumbsDown()) {
+                thumbsDownCount++;
+            }
+        }
+        return new ClassAggregate(classId, thumbsDownCount, painPoints.size(), System.currentTimeMillis());
+    }
+
+    /**
+     * Bind the pain point to the ID, CLASSID, USERNAME, THUMBSDOWN parameters of a statement, in that order.
+     * The version is assigned by the database.
+     */
+    public static void bindPainPoint(PreparedStatement statement, PainPoint painPoint) throws SQLException {
+        statement.setInt(1, painPoint.getPainPointId());
+        statement.setInt(2, painPoint.getClassId());
+        statement.setString(3, painPoint.getUserName());
+        statement.setBoolean(4, painPoint.isThumbsDown());
     }
 
     public static Map<Integer, PainPoint> createPainPointMap(ResultSet resultSet) throws SQLException {
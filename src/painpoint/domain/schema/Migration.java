@@ -0,0 +1,23 @@
+package painpoint.domain.schema;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * One step of the schema, applied once per database by {@link SchemaMigrator}.
+ * Should be safe to re-run, another client can be applying the same step at the same time.
+ */
+public interface Migration {
+
+    /**
+     * @return schema version after this step, versions start at 1 and increase by one.
+     */
+    int getVersion();
+
+    /**
+     * @return what the step does, stored with the version.
+     */
+    String getDescription();
+
+    void apply(Connection connection) throws SQLException;
+}
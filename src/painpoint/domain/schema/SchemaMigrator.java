@@ -0,0 +1,103 @@
+package painpoint.domain.schema;
+
+import com.intellij.ide.plugins.PluginManager;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Brings a database up to the latest schema version.
+ * The applied version is kept in the PainPointSchema table and checked once per database url per IDE session.
+ */
+public class SchemaMigrator {
+
+    private static final String SCHEMA_TABLE_NAME = "PainPointSchema";
+    private static final String SELECT_VERSION_SQL = "SELECT MAX(version) FROM " + SCHEMA_TABLE_NAME;
+    private static final String RECORD_VERSION_SQL = "MERGE INTO " + SCHEMA_TABLE_NAME
+            + " (version, description, applied_at) KEY (version) VALUES (?, ?, CURRENT_TIMESTAMP())";
+
+    private static final Set<String> sMigratedUrls = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Apply the migrations the database doesn't have yet, unless this session already did for the url.
+     *
+     * @param url        JDBC url, identifies the database.
+     * @param connection connection to the database.
+     * @param migrations every migration, in version order.
+     * @throws SQLException if a migration fails, the url is checked again next time.
+     */
+    public static void migrateOnce(String url, Connection connection, List<Migration> migrations) throws SQLException {
+        if (sMigratedUrls.contains(url)) {
+            return;
+        }
+        synchronized (SchemaMigrator.class) {
+            if (sMigratedUrls.contains(url)) {
+                return;
+            }
+            migrate(connection, migrations);
+            sMigratedUrls.add(url);
+        }
+    }
+
+    /**
+     * Apply the migrations newer than the database's schema version, in order.
+     *
+     * @param connection connection to the database.
+     * @param migrations every migration, in version order.
+     * @return schema version of the database afterwards.
+     * @throws SQLException if a migration fails.
+     */
+    public static int migrate(Connection connection, List<Migration> migrations) throws SQLException {
+        int version = readVersion(connection);
+        for (Migration migration : migrations) {
+            if (migration.getVersion() <= version) {
+                continue;
+            }
+            PluginManager.getLogger().info("Migrating PainPoint schema to " + migration.getVersion() + ": " + migration.getDescription());
+            migration.apply(connection);
+            recordVersion(connection, migration);
+            version = migration.getVersion();
+        }
+        return version;
+    }
+
+    /**
+     * Read the schema version, without failing if the version table isn't there yet.
+     *
+     * @param connection connection to the database.
+     * @return applied schema version, 0 for a database that was never migrated.
+     * @throws SQLException if the database can't be read.
+     */
+    public static int readVersion(Connection connection) throws SQLException {
+        ResultSet tables = connection.getMetaData().getTables(null, null, SCHEMA_TABLE_NAME.toUpperCase(), null);
+        boolean exists = tables.next();
+        tables.close();
+        if (!exists) {
+            return 0;
+        }
+        Statement stat = connection.createStatement();
+        ResultSet resultSet = stat.executeQuery(SELECT_VERSION_SQL);
+        int version = resultSet.next() ? resultSet.getInt(1) : 0;
+        resultSet.close();
+        stat.close();
+        return version;
+    }
+
+    private static void recordVersion(Connection connection, Migration migration) throws SQLException {
+        Statement stat = connection.createStatement();
+        stat.execute("CREATE TABLE IF NOT EXISTS " + SCHEMA_TABLE_NAME + " (version INT PRIMARY KEY, description VARCHAR(256), applied_at TIMESTAMP)");
+        stat.close();
+
+        PreparedStatement record = connection.prepareStatement(RECORD_VERSION_SQL);
+        record.setInt(1, migration.getVersion());
+        record.setString(2, migration.getDescription());
+        record.executeUpdate();
+        record.close();
+    }
+}
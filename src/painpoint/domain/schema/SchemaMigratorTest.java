@@ -0,0 +1,110 @@
+package painpoint.domain.schema;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import painpoint.domain.painpoint.PainPointMigrations;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SchemaMigratorTest {
+
+    private static int sDatabaseCount;
+
+    private String mUrl;
+    private Connection mConnection;
+
+    @Before
+    public void setUp() throws Exception {
+        Class.forName("org.h2.Driver");
+        // a new database per test, migrateOnce remembers urls for the whole run.
+        mUrl = "jdbc:h2:mem:schemaMigratorTest" + (sDatabaseCount++);
+        mConnection = DriverManager.getConnection(mUrl, "sa", "");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mConnection.close();
+    }
+
+    @Test
+    public void testMigrateOnce_baselineTableToLatest() throws Exception {
+
+        // GIVEN a PainPoint table with a vote, as created before the schema was versioned.
+        execute("CREATE TABLE PainPoint (id INTEGER PRIMARY KEY, classid INT NOT NULL, username VARCHAR(256), thumbsdown BOOLEAN)");
+        execute("INSERT INTO PainPoint (id, classid, username, thumbsdown) VALUES (1, 10, 'user', TRUE)");
+
+        // WHEN it is migrated.
+        SchemaMigrator.migrateOnce(mUrl, mConnection, PainPointMigrations.MIGRATIONS);
+
+        // THEN it is at the latest version, the vote is kept and totalled, and it has a change version.
+        assertEquals(latestVersion(), SchemaMigrator.readVersion(mConnection));
+        assertEquals(1, queryInt("SELECT thumbs_down_count FROM PainPointAggregate WHERE classid = 10"));
+        assertEquals(0, queryInt("SELECT version FROM PainPoint WHERE id = 1"));
+    }
+
+    @Test
+    public void testMigrateOnce_secondRunIsNoOp() throws Exception {
+
+        // GIVEN a database migrated once.
+        SchemaMigrator.migrateOnce(mUrl, mConnection, PainPointMigrations.MIGRATIONS);
+        int recorded = queryInt("SELECT COUNT(*) FROM PainPointSchema");
+
+        // WHEN it is migrated again, the second time with a connection that can't be used.
+        Connection closed = DriverManager.getConnection(mUrl, "sa", "");
+        closed.close();
+        SchemaMigrator.migrateOnce(mUrl, closed, PainPointMigrations.MIGRATIONS);
+        int version = SchemaMigrator.migrate(mConnection, PainPointMigrations.MIGRATIONS);
+
+        // THEN nothing is applied or recorded again.
+        assertEquals(latestVersion(), version);
+        assertEquals(recorded, queryInt("SELECT COUNT(*) FROM PainPointSchema"));
+    }
+
+    @Test
+    public void testMigrateOnce_failingMigrationKeepsVersion() throws Exception {
+
+        // GIVEN a database at the latest version and a next migration that fails.
+        SchemaMigrator.migrate(mConnection, PainPointMigrations.MIGRATIONS);
+        List<Migration> migrations = new ArrayList<>(PainPointMigrations.MIGRATIONS);
+        migrations.add(new SqlMigration(latestVersion() + 1, "Broken", "ALTER TABLE NoSuchTable ADD COLUMN x INT"));
+
+        // WHEN it is migrated.
+        try {
+            SchemaMigrator.migrateOnce(mUrl, mConnection, migrations);
+            fail("expected the broken migration to fail");
+        }
+        catch (SQLException expected) {
+            // THEN the recorded version is unchanged.
+            assertEquals(latestVersion(), SchemaMigrator.readVersion(mConnection));
+        }
+    }
+
+    private static int latestVersion() {
+        return PainPointMigrations.MIGRATIONS.get(PainPointMigrations.MIGRATIONS.size() - 1).getVersion();
+    }
+
+    private void execute(String sql) throws SQLException {
+        Statement stat = mConnection.createStatement();
+        stat.execute(sql);
+        stat.close();
+    }
+
+    private int queryInt(String sql) throws SQLException {
+        Statement stat = mConnection.createStatement();
+        ResultSet resultSet = stat.executeQuery(sql);
+        assertTrue(resultSet.next());
+        int value = resultSet.getInt(1);
+        resultSet.close();
+        stat.close();
+        return value;
+    }
+}
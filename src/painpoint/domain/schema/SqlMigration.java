@@ -0,0 +1,44 @@
+package painpoint.domain.schema;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * A migration made of plain SQL statements, run in order.
+ */
+public class SqlMigration implements Migration {
+
+    private final int mVersion;
+    private final String mDescription;
+    private final String[] mStatements;
+
+    public SqlMigration(int version, String description, String... statements) {
+        mVersion = version;
+        mDescription = description;
+        mStatements = statements;
+    }
+
+    @Override
+    public int getVersion() {
+        return mVersion;
+    }
+
+    @Override
+    public String getDescription() {
+        return mDescription;
+    }
+
+    @Override
+    public void apply(Connection connection) throws SQLException {
+        Statement stat = connection.createStatement();
+        try {
+            for (String sql : mStatements) {
+                stat.execute(sql);
+            }
+        }
+        finally {
+            stat.close();
+        }
+    }
+}
@@ -0,0 +1,566 @@
+package painpoint.git;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Reads git config values in-process, the way `git config key` would, from the system, global and repository files.
+ * Follows include.path and includeIf "gitdir:" / "gitdir/i:" directives.
+ * Parsed files are cached and parsed again only when their modification time or size changes.
+ */
+public class GitConfigReader {
+
+    private static final int MAX_INCLUDE_DEPTH = 10;
+    private static final String GITDIR_PREFIX = "gitdir:";
+    private static final String GITDIR_IGNORE_CASE_PREFIX = "gitdir/i:";
+
+    private static final Map<String, ParsedFile> sParsedFiles = new ConcurrentHashMap<>();
+
+    private final File mWorkTree;
+    private final File mSystemConfig;
+    private final List<File> mGlobalConfigs;
+    private final File mHome;
+
+    /**
+     * Read the config for the repository that contains a directory, with the default system and global files.
+     *
+     * @param workTree project directory, the repository is found by looking for .git here and in its parents.
+     */
+    public GitConfigReader(@NotNull String workTree) {
+        this(new File(workTree), getSystemConfigFile(), getGlobalConfigFiles(), new File(System.getProperty("user.home")));
+    }
+
+    /**
+     * Read the config from explicit files.
+     *
+     * @param workTree      project directory.
+     * @param systemConfig  system config file, or null to skip it.
+     * @param globalConfigs global config files, lowest priority first.
+     * @param home          directory "~" expands to.
+     */
+    GitConfigReader(@NotNull File workTree, @Nullable File systemConfig, @NotNull List<File> globalConfigs, @NotNull File home) {
+        mWorkTree = workTree;
+        mSystemConfig = systemConfig;
+        mGlobalConfigs = globalConfigs;
+        mHome = home;
+    }
+
+    /**
+     * The global config files git reads, lowest priority first.
+     *
+     * @return $XDG_CONFIG_HOME/git/config and ~/.gitconfig, or $GIT_CONFIG_GLOBAL if set.
+     */
+    public static List<File> getGlobalConfigFiles() {
+        String override = System.getenv("GIT_CONFIG_GLOBAL");
+        if (override != null && !override.isEmpty()) {
+            return Collections.singletonList(new File(override));
+        }
+        List<File> files = new ArrayList<>();
+        String home = System.getProperty("user.home");
+        String xdgConfigHome = System.getenv("XDG_CONFIG_HOME");
+        if (xdgConfigHome == null || xdgConfigHome.isEmpty()) {
+            xdgConfigHome = home + "/.config";
+        }
+        files.add(new File(xdgConfigHome, "git/config"));
+        files.add(new File(home, ".gitconfig"));
+        return files;
+    }
+
+    /**
+     * The system config file git reads.
+     *
+     * @return $GIT_CONFIG_SYSTEM, /etc/gitconfig, or null when GIT_CONFIG_NOSYSTEM is set.
+     */
+    @Nullable
+    public static File getSystemConfigFile() {
+        if (isTrue(System.getenv("GIT_CONFIG_NOSYSTEM"))) {
+            return null;
+        }
+        String override = System.getenv("GIT_CONFIG_SYSTEM");
+        if (override != null && !override.isEmpty()) {
+            return new File(override);
+        }
+        return new File("/etc/gitconfig");
+    }
+
+    /**
+     * Look up a config value, the last one set wins like it does for git.
+     *
+     * @param key dotted key, ex. "user.email".  Section and name are case-insensitive.
+     * @return the value, or null if it isn't set.
+     * @throws IOException if a config file couldn't be read, or the config is set up in a way this reader doesn't follow.
+     */
+    @Nullable
+    public String getValue(@NotNull String key) throws IOException {
+        if (System.getenv("GIT_CONFIG_COUNT") != null || System.getenv("GIT_CONFIG_PARAMETERS") != null) {
+            throw new IOException("config passed through the environment isn't supported");
+        }
+
+        String normalizedKey = normalizeKey(key);
+        File gitDir = findGitDir(mWorkTree);
+        String[] value = new String[1];
+        if (mSystemConfig != null) {
+            collect(mSystemConfig, normalizedKey, gitDir, 0, value);
+        }
+        for (File globalConfig : mGlobalConfigs) {
+            collect(globalConfig, normalizedKey, gitDir, 0, value);
+        }
+        if (gitDir != null) {
+            collect(new File(findCommonDir(gitDir), "config"), normalizedKey, gitDir, 0, value);
+        }
+        return value[0];
+    }
+
+    private void collect(File configFile, String key, File gitDir, int depth, String[] value) throws IOException {
+        if (depth > MAX_INCLUDE_DEPTH) {
+            throw new IOException("includes nested too deeply at " + configFile);
+        }
+        for (Entry entry : parse(configFile)) {
+            if (entry.mKey.equals(key)) {
+                value[0] = entry.mValue;
+            }
+            else if (entry.mValue != null && isInclude(entry.mKey, configFile, gitDir)) {
+                collect(resolvePath(entry.mValue, configFile.getParentFile()), key, gitDir, depth + 1, value);
+            }
+        }
+    }
+
+    private boolean isInclude(String key, File configFile, File gitDir) throws IOException {
+        if (key.equals("include.path")) {
+            return true;
+        }
+        if (!key.startsWith("includeif.") || !key.endsWith(".path")) {
+            return false;
+        }
+        String condition = key.substring("includeif.".length(), key.length() - ".path".length());
+        if (gitDir == null) {
+            return false;
+        }
+        if (condition.startsWith(GITDIR_PREFIX)) {
+            return matchesGitDir(condition.substring(GITDIR_PREFIX.length()), configFile, gitDir, false);
+        }
+        if (condition.startsWith(GITDIR_IGNORE_CASE_PREFIX)) {
+            return matchesGitDir(condition.substring(GITDIR_IGNORE_CASE_PREFIX.length()), configFile, gitDir, true);
+        }
+        // onbranch:, hasconfig: and conditions from newer gits don't pick identities in practice, treat them as not matching.
+        return false;
+    }
+
+    private boolean matchesGitDir(String pattern, File configFile, File gitDir, boolean ignoreCase) throws IOException {
+        if (pattern.startsWith("./")) {
+            pattern = toSlashes(configFile.getParentFile().getAbsolutePath()) + pattern.substring(1);
+        }
+        else if (pattern.startsWith("~/")) {
+            pattern = toSlashes(mHome.getAbsolutePath()) + pattern.substring(1);
+        }
+        else if (!pattern.startsWith("/") && !isWindowsAbsolute(pattern)) {
+            pattern = "**/" + pattern;
+        }
+        if (pattern.endsWith("/")) {
+            pattern = pattern + "**";
+        }
+        Pattern regex = Pattern.compile(globToRegex(pattern), ignoreCase ? Pattern.CASE_INSENSITIVE : 0);
+        return regex.matcher(toSlashes(gitDir.getAbsolutePath())).matches()
+                || regex.matcher(toSlashes(gitDir.getCanonicalPath())).matches();
+    }
+
+    private File resolvePath(String path, File baseDir) {
+        if (path.startsWith("~/")) {
+            return new File(mHome, path.substring(2));
+        }
+        File file = new File(path);
+        if (file.isAbsolute()) {
+            return file;
+        }
+        return new File(baseDir, path);
+    }
+
+    /**
+     * The repository config file `git config` writes to without --global.
+     *
+     * @return the config file, or null if the directory isn't in a repository.
+     * @throws IOException if a .git or commondir file couldn't be read.
+     */
+    @Nullable
+    public File getLocalConfigFile() throws IOException {
+        File gitDir = findGitDir(mWorkTree);
+        return gitDir != null ? new File(findCommonDir(gitDir), "config") : null;
+    }
+
+    /**
+     * Drop a file from the parse cache, for writers that can't rely on the modification time changing.
+     *
+     * @param configFile file that was written.
+     */
+    static void forget(File configFile) {
+        sParsedFiles.remove(configFile.getAbsolutePath());
+    }
+
+    /**
+     * Find the .git directory for a work tree, following a .git file ("gitdir: ...") for worktrees and submodules.
+     *
+     * @param workTree directory in the repository.
+     * @return the git directory or null if the directory isn't in a repository.
+     * @throws IOException if a .git file couldn't be read.
+     */
+    @Nullable
+    static File findGitDir(File workTree) throws IOException {
+        for (File dir = workTree.getAbsoluteFile(); dir != null; dir = dir.getParentFile()) {
+            File dotGit = new File(dir, ".git");
+            if (dotGit.isDirectory()) {
+                return dotGit;
+            }
+            if (dotGit.isFile()) {
+                String content = new String(Files.readAllBytes(dotGit.toPath()), StandardCharsets.UTF_8).trim();
+                if (!content.startsWith(GITDIR_PREFIX)) {
+                    throw new IOException("unexpected contents in " + dotGit);
+                }
+                File gitDir = new File(content.substring(GITDIR_PREFIX.length()).trim());
+                return gitDir.isAbsolute() ? gitDir : new File(dir, gitDir.getPath());
+            }
+        }
+        return null;
+    }
+
+    // a linked worktree keeps its config in the main repository, named by the commondir file.
+    private static File findCommonDir(File gitDir) throws IOException {
+        File commonDirFile = new File(gitDir, "commondir");
+        if (!commonDirFile.isFile()) {
+            return gitDir;
+        }
+        String commonDir = new String(Files.readAllBytes(commonDirFile.toPath()), StandardCharsets.UTF_8).trim();
+        File file = new File(commonDir);
+        return file.isAbsolute() ? file : new File(gitDir, commonDir);
+    }
+
+    private static List<Entry> parse(File configFile) throws IOException {
+        String path = configFile.getAbsolutePath();
+        long lastModified = configFile.lastModified();
+        long length = configFile.length();
+        ParsedFile cached = sParsedFiles.get(path);
+        if (cached != null && cached.mLastModified == lastModified && cached.mLength == length) {
+            return cached.mEntries;
+        }
+
+        List<Entry> entries;
+        if (lastModified == 0 && !configFile.exists()) {
+            entries = Collections.emptyList();
+        }
+        else {
+            String content = new String(Files.readAllBytes(configFile.toPath()), StandardCharsets.UTF_8);
+            entries = new Parser(content, path).parse();
+        }
+        sParsedFiles.put(path, new ParsedFile(lastModified, length, entries));
+        return entries;
+    }
+
+    // section and name are case-insensitive, a subsection is not.
+    static String normalizeKey(String key) {
+        int firstDot = key.indexOf('.');
+        int lastDot = key.lastIndexOf('.');
+        if (firstDot < 0) {
+            return key.toLowerCase();
+        }
+        return key.substring(0, firstDot).toLowerCase() + key.substring(firstDot, lastDot) + key.substring(lastDot).toLowerCase();
+    }
+
+    static String globToRegex(String glob) {
+        StringBuilder regex = new StringBuilder();
+        int length = glob.length();
+        for (int i = 0; i < length; i++) {
+            char c = glob.charAt(i);
+            if (c == '*') {
+                if (i + 1 < length && glob.charAt(i + 1) == '*') {
+                    i++;
+                    if (i + 1 < length && glob.charAt(i + 1) == '/') {
+                        i++;
+                        regex.append("(?:.*/)?");
+                    }
+                    else {
+                        regex.append(".*");
+                    }
+                }
+                else {
+                    regex.append("[^/]*");
+                }
+            }
+            else if (c == '?') {
+                regex.append("[^/]");
+            }
+            else if (c == '[') {
+                int end = glob.indexOf(']', i + 2);
+                if (end < 0) {
+                    regex.append("\\[");
+                    continue;
+                }
+                String set = glob.substring(i + 1, end);
+                if (set.startsWith("!")) {
+                    set = "^" + set.substring(1);
+                }
+                regex.append('[').append(set.replace("\\", "\\\\")).append(']');
+                i = end;
+            }
+            else {
+                regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return regex.toString();
+    }
+
+    private static boolean isTrue(String value) {
+        return value != null && (value.equalsIgnoreCase("true") || value.equalsIgnoreCase("yes") || value.equals("1"));
+    }
+
+    private static boolean isWindowsAbsolute(String path) {
+        return path.length() > 2 && Character.isLetter(path.charAt(0)) && path.charAt(1) == ':';
+    }
+
+    private static String toSlashes(String path) {
+        return path.replace('\\', '/');
+    }
+
+    private static class Entry {
+        private final String mKey;
+        private final String mValue;
+
+        Entry(String key, String value) {
+            mKey = key;
+            mValue = value;
+        }
+    }
+
+    private static class ParsedFile {
+        private final long mLastModified;
+        private final long mLength;
+        private final List<Entry> mEntries;
+
+        ParsedFile(long lastModified, long length, List<Entry> entries) {
+            mLastModified = lastModified;
+            mLength = length;
+            mEntries = entries;
+        }
+    }
+
+    /**
+     * Parser for the git config file syntax: sections, quoted subsections, comments, quoted values, escapes and
+     * line continuations.  A key without a value is the boolean true.
+     */
+    private static class Parser {
+        private final String mContent;
+        private final String mPath;
+        private int mPosition;
+        private String mSection;
+
+        Parser(String content, String path) {
+            mContent = content;
+            mPath = path;
+        }
+
+        List<Entry> parse() throws IOException {
+            List<Entry> entries = new ArrayList<>();
+            while (true) {
+                skipWhitespace(true);
+                if (atEnd()) {
+                    return Collections.unmodifiableList(entries);
+                }
+                char c = peek();
+                if (c == '#' || c == ';') {
+                    skipLine();
+                }
+                else if (c == '[') {
+                    mPosition++;
+                    mSection = parseSectionHeader();
+                }
+                else if (Character.isLetter(c)) {
+                    if (mSection == null) {
+                        throw error("key outside of a section");
+                    }
+                    String name = parseName();
+                    skipWhitespace(false);
+                    String value;
+                    if (!atEnd() && peek() == '=') {
+                        mPosition++;
+                        value = parseValue();
+                    }
+                    else if (atEnd() || peek() == '\n' || peek() == '#' || peek() == ';') {
+                        value = "true";
+                        skipLine();
+                    }
+                    else {
+                        throw error("expected '=' after " + name);
+                    }
+                    entries.add(new Entry(mSection + "." + name.toLowerCase(), value));
+                }
+                else {
+                    throw error("unexpected '" + c + "'");
+                }
+            }
+        }
+
+        private String parseSectionHeader() throws IOException {
+            StringBuilder section = new StringBuilder();
+            while (!atEnd() && (Character.isLetterOrDigit(peek()) || peek() == '-' || peek() == '.')) {
+                section.append(Character.toLowerCase(next()));
+            }
+            skipWhitespace(false);
+            if (atEnd()) {
+                throw error("unterminated section header");
+            }
+            if (peek() == ']') {
+                mPosition++;
+                // [section.subsection] is the old, case-insensitive way of naming a subsection.
+                return section.toString();
+            }
+            if (peek() != '"') {
+                throw error("bad section header");
+            }
+            mPosition++;
+            StringBuilder subsection = new StringBuilder();
+            while (true) {
+                if (atEnd() || peek() == '\n') {
+                    throw error("unterminated subsection");
+                }
+                char c = next();
+                if (c == '"') {
+                    break;
+                }
+                if (c == '\\') {
+                    if (atEnd()) {
+                        throw error("unterminated subsection");
+                    }
+                    c = next();
+                }
+                subsection.append(c);
+            }
+            if (atEnd() || next() != ']') {
+                throw error("expected ']' after subsection");
+            }
+            return section + "." + subsection;
+        }
+
+        private String parseName() {
+            StringBuilder name = new StringBuilder();
+            while (!atEnd() && (Character.isLetterOrDigit(peek()) || peek() == '-')) {
+                name.append(next());
+            }
+            return name.toString();
+        }
+
+        private String parseValue() throws IOException {
+            skipWhitespace(false);
+            StringBuilder value = new StringBuilder();
+            boolean quoted = false;
+            // length of the value without trailing whitespace that isn't quoted.
+            int trimmedLength = 0;
+            while (!atEnd()) {
+                char c = next();
+                if (c == '\n') {
+                    if (quoted) {
+                        throw error("unterminated quoted value");
+                    }
+                    break;
+                }
+                if (!quoted && (c == '#' || c == ';')) {
+                    skipLine();
+                    break;
+                }
+                if (c == '"') {
+                    quoted = !quoted;
+                    trimmedLength = value.length();
+                    continue;
+                }
+                if (c == '\\') {
+                    if (atEnd()) {
+                        throw error("backslash at end of file");
+                    }
+                    char escaped = next();
+                    if (escaped == '\r' && !atEnd() && peek() == '\n') {
+                        escaped = next();
+                    }
+                    switch (escaped) {
+                        case '\n':
+                            // line continuation.
+                            continue;
+                        case 'n':
+                            value.append('\n');
+                            break;
+                        case 't':
+                            value.append('\t');
+                            break;
+                        case 'b':
+                            if (value.length() > 0) {
+                                value.setLength(value.length() - 1);
+                            }
+                            break;
+                        case '\\':
+                        case '"':
+                            value.append(escaped);
+                            break;
+                        default:
+                            throw error("bad escape '\\" + escaped + "'");
+                    }
+                    trimmedLength = value.length();
+                    continue;
+                }
+                value.append(c);
+                if (quoted || !Character.isWhitespace(c)) {
+                    trimmedLength = value.length();
+                }
+            }
+            if (quoted) {
+                throw error("unterminated quoted value");
+            }
+            value.setLength(trimmedLength);
+            return value.toString();
+        }
+
+        private void skipWhitespace(boolean newlines) {
+            while (!atEnd()) {
+                char c = peek();
+                if (c == '\n' ? !newlines : !Character.isWhitespace(c)) {
+                    return;
+                }
+                mPosition++;
+            }
+        }
+
+        private void skipLine() {
+            while (!atEnd() && next() != '\n') {
+                // skip
+            }
+        }
+
+        private boolean atEnd() {
+            return mPosition >= mContent.length();
+        }
+
+        private char peek() {
+            return mContent.charAt(mPosition);
+        }
+
+        private char next() {
+            return mContent.charAt(mPosition++);
+        }
+
+        private IOException error(String message) {
+            int line = 1;
+            for (int i = 0; i < mPosition && i < mContent.length(); i++) {
+                if (mContent.charAt(i) == '\n') {
+                    line++;
+                }
+            }
+            return new IOException(mPath + ":" + line + ": " + message);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package painpoint.git;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class GitConfigReaderTest {
+
+    private File mRoot;
+    private File mHome;
+    private File mWorkTree;
+    private File mGlobalConfig;
+
+    @Before
+    public void setUp() throws Exception {
+        mRoot = Files.createTempDirectory("gitconfig").toFile();
+        mHome = new File(mRoot, "home");
+        mWorkTree = new File(mHome, "work/project");
+        assertTrue(new File(mWorkTree, ".git").mkdirs());
+        mGlobalConfig = new File(mHome, ".gitconfig");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        delete(mRoot);
+    }
+
+    @Test
+    public void testGetValue_localOverridesGlobal() throws Exception {
+
+        // GIVEN a global user and a repository user, in differently cased sections with comments and quotes.
+        write(mGlobalConfig, "[User]\n\tname = Global Person ; a comment\n\temail = global@example.com\n");
+        write(new File(mWorkTree, ".git/config"), "[core]\n\tbare\n[user]\n\tname = \"Rob \\\"Bubba\\\" Wallis\" # comment\n");
+
+        // WHEN the values are read.
+        GitConfigReader reader = createReader();
+
+        // THEN the repository value wins, and values only set globally still come through.
+        assertEquals("Rob \"Bubba\" Wallis", reader.getValue("user.name"));
+        assertEquals("global@example.com", reader.getValue("user.email"));
+        assertEquals("true", reader.getValue("core.bare"));
+        assertNull(reader.getValue("user.signingkey"));
+    }
+
+    @Test
+    public void testGetValue_followsIncludes() throws Exception {
+
+        // GIVEN a global config that includes a relative file, and includes another file only for repositories under ~/work.
+        write(mGlobalConfig, "[user]\n\tname = Before Include\n[include]\n\tpath = identity.inc\n"
+                + "[includeIf \"gitdir:~/work/\"]\n\tpath = work.inc\n[includeIf \"gitdir:~/play/\"]\n\tpath = play.inc\n");
+        write(new File(mHome, "identity.inc"), "[user]\n\tname = Included Name\n\temail = home@example.com\n");
+        write(new File(mHome, "work.inc"), "[user]\n\temail = work@example.com\n");
+        write(new File(mHome, "play.inc"), "[user]\n\temail = play@example.com\n");
+
+        // WHEN the values are read for a repository under ~/work.
+        GitConfigReader reader = createReader();
+
+        // THEN included values override earlier ones, and only the matching conditional include is used.
+        assertEquals("Included Name", reader.getValue("user.name"));
+        assertEquals("work@example.com", reader.getValue("user.email"));
+    }
+
+    @Test
+    public void testGetValue_reparsesChangedFile() throws Exception {
+
+        // GIVEN a value that was already read and cached.
+        File localConfig = new File(mWorkTree, ".git/config");
+        write(localConfig, "[user]\n\temail = old@example.com\n");
+        GitConfigReader reader = createReader();
+        assertEquals("old@example.com", reader.getValue("user.email"));
+
+        // WHEN the file changes.
+        write(localConfig, "[user]\n\temail = a.new.address@example.com\n");
+        assertTrue(localConfig.setLastModified(localConfig.lastModified() + 2000));
+
+        // THEN the new value is read.
+        assertEquals("a.new.address@example.com", reader.getValue("user.email"));
+    }
+
+    @Test
+    public void testGetValue_followsGitFileForWorktrees() throws Exception {
+
+        // GIVEN a linked worktree whose .git is a file pointing at a git dir that shares the main repository's config.
+        File mainGitDir = new File(mWorkTree, ".git");
+        write(new File(mainGitDir, "config"), "[user]\n\tname = Main Repository\n");
+        File linkedGitDir = new File(mainGitDir, "worktrees/feature");
+        write(new File(linkedGitDir, "commondir"), "../..\n");
+        File linkedWorkTree = new File(mRoot, "feature");
+        write(new File(linkedWorkTree, ".git"), "gitdir: " + linkedGitDir.getAbsolutePath() + "\n");
+
+        // WHEN a value is read from a directory inside the linked worktree.
+        File subDirectory = new File(linkedWorkTree, "src");
+        assertTrue(subDirectory.mkdirs());
+        GitConfigReader reader = new GitConfigReader(subDirectory, null, Collections.<File>emptyList(), mHome);
+
+        // THEN the main repository's config is used.
+        assertEquals("Main Repository", reader.getValue("user.name"));
+    }
+
+    @Test(expected = IOException.class)
+    public void testGetValue_malformedFileThrows() throws Exception {
+
+        // GIVEN a config with an unterminated section header.
+        write(mGlobalConfig, "[user\n\tname = Broken\n");
+
+        // WHEN it is read, THEN the reader fails so git can be asked instead.
+        createReader().getValue("user.name");
+    }
+
+    @Test
+    public void testGlobToRegex_gitdirPatterns() throws Exception {
+
+        // GIVEN includeIf style patterns, WHEN they are matched, THEN ** spans directories and * doesn't.
+        assertTrue("/home/rob/work/project/.git".matches(GitConfigReader.globToRegex("/home/rob/work/**")));
+        assertTrue("/home/rob/work/project/.git".matches(GitConfigReader.globToRegex("**/work/*/.git")));
+        assertFalse("/home/rob/work/a/b/.git".matches(GitConfigReader.globToRegex("/home/rob/work/*/.git")));
+    }
+
+    private GitConfigReader createReader() {
+        return new GitConfigReader(mWorkTree, null, Arrays.asList(new File(mHome, ".config/git/config"), mGlobalConfig), mHome);
+    }
+
+    private static void write(File file, String content) throws IOException {
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
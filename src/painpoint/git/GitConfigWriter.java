@@ -0,0 +1,300 @@
+package painpoint.git;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Edits one git config file in-process.
+ * Changes are collected with {@link #set(String, String)} and {@link #unset(String)} and written by {@link #commit()}
+ * in a single write, under git's own lock file so a git process running at the same time can't interleave with it.
+ * Lines that aren't changed are kept as they are.
+ */
+public class GitConfigWriter {
+
+    private static final Pattern SECTION_HEADER = Pattern.compile("^\\s*\\[([A-Za-z0-9.-]+)(?:\\s+\"((?:[^\"\\\\\\n]|\\\\.)*)\")?\\s*\\]\\s*(?:[#;].*)?$");
+    private static final Pattern KEY_LINE = Pattern.compile("^\\s*([A-Za-z][A-Za-z0-9-]*)\\s*(?:=.*|[#;].*)?$");
+
+    private final File mConfigFile;
+    // normalized key to new value, null to unset.
+    private final Map<String, String> mChanges = new LinkedHashMap<>();
+
+    /**
+     * @param configFile config file to edit, created on commit if it doesn't exist.
+     */
+    public GitConfigWriter(@NotNull File configFile) {
+        mConfigFile = configFile;
+    }
+
+    /**
+     * The global config file `git config --global` writes to.
+     *
+     * @return ~/.gitconfig, unless only the XDG file exists, or $GIT_CONFIG_GLOBAL if set.
+     */
+    public static File getGlobalConfigFileForWrite() {
+        List<File> globalConfigs = GitConfigReader.getGlobalConfigFiles();
+        File preferred = globalConfigs.get(globalConfigs.size() - 1);
+        File xdg = globalConfigs.get(0);
+        if (!preferred.exists() && xdg.exists()) {
+            return xdg;
+        }
+        return preferred;
+    }
+
+    /**
+     * Set a value, replacing the current one.
+     *
+     * @param key   section and name, ex. "user.email".
+     * @param value new value.
+     * @return this writer.
+     */
+    public GitConfigWriter set(@NotNull String key, @NotNull String value) {
+        mChanges.put(normalizeKey(key), value);
+        return this;
+    }
+
+    /**
+     * Remove a value.
+     *
+     * @param key section and name, ex. "user.email".
+     * @return this writer.
+     */
+    public GitConfigWriter unset(@NotNull String key) {
+        mChanges.put(normalizeKey(key), null);
+        return this;
+    }
+
+    /**
+     * Write every change in one go: take config.lock, write the new contents to it, then rename it over the config.
+     *
+     * @throws IOException if the file is locked by someone else, has lines this writer doesn't understand, or can't be written.
+     */
+    public void commit() throws IOException {
+        if (mChanges.isEmpty()) {
+            return;
+        }
+
+        // like git, write the file a symlinked config points to, ex. one kept by a dotfile manager, not the link.
+        Path configPath = mConfigFile.exists() ? mConfigFile.toPath().toRealPath() : mConfigFile.toPath();
+        File lockFile = new File(configPath + ".lock");
+        File parent = lockFile.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("couldn't create " + parent);
+        }
+        try {
+            Files.createFile(lockFile.toPath());
+        }
+        catch (FileAlreadyExistsException ex) {
+            throw new IOException(lockFile + " exists, another git process seems to be running", ex);
+        }
+
+        boolean renamed = false;
+        try {
+            boolean exists = Files.exists(configPath);
+            String content = exists ? new String(Files.readAllBytes(configPath), StandardCharsets.UTF_8) : "";
+            byte[] updated = apply(content).getBytes(StandardCharsets.UTF_8);
+            try (OutputStream out = new FileOutputStream(lockFile)) {
+                out.write(updated);
+                out.flush();
+            }
+            if (exists) {
+                copyPermissions(configPath, lockFile.toPath());
+            }
+            Files.move(lockFile.toPath(), configPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            renamed = true;
+        }
+        finally {
+            if (!renamed) {
+                Files.deleteIfExists(lockFile.toPath());
+            }
+        }
+        mChanges.clear();
+        GitConfigReader.forget(mConfigFile);
+    }
+
+    // the renamed lock file replaces the config, so it keeps the config's mode, ex. 600 for a config with credentials.
+    private static void copyPermissions(Path from, Path to) throws IOException {
+        if (Files.getFileAttributeView(from, PosixFileAttributeView.class) != null) {
+            Files.setPosixFilePermissions(to, Files.getPosixFilePermissions(from));
+        }
+    }
+
+    /**
+     * Apply the pending changes to config file text.
+     *
+     * @param content current contents of the config file.
+     * @return new contents.
+     * @throws IOException if the file has lines this writer doesn't understand.
+     */
+    String apply(String content) throws IOException {
+        List<String> lines = new ArrayList<>(Arrays.asList(content.split("\n", -1)));
+        // split leaves an empty last element for a trailing newline, put it back at the end.
+        boolean trailingNewline = !lines.isEmpty() && lines.get(lines.size() - 1).isEmpty();
+        if (trailingNewline) {
+            lines.remove(lines.size() - 1);
+        }
+        String lineEnd = content.contains("\r\n") ? "\r" : "";
+
+        for (Map.Entry<String, String> change : mChanges.entrySet()) {
+            String key = change.getKey();
+            String section = key.substring(0, key.lastIndexOf('.'));
+            String name = key.substring(key.lastIndexOf('.') + 1);
+            applyChange(lines, section, name, change.getValue(), lineEnd);
+        }
+
+        StringBuilder updated = new StringBuilder();
+        for (int i = 0; i < lines.size(); i++) {
+            if (i > 0) {
+                updated.append('\n');
+            }
+            updated.append(lines.get(i));
+        }
+        if (!lines.isEmpty()) {
+            updated.append('\n');
+        }
+        return updated.toString();
+    }
+
+    private void applyChange(List<String> lines, String section, String name, String value, String lineEnd) throws IOException {
+        String currentSection = null;
+        int lastSectionEnd = -1;
+        // the last line of the value that is replaced, git reads the last one set.
+        int replaceStart = -1;
+        int replaceEnd = -1;
+        List<int[]> existing = new ArrayList<>();
+
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            String trimmed = line.trim();
+            if (trimmed.startsWith("[")) {
+                Matcher header = SECTION_HEADER.matcher(line);
+                if (!header.matches()) {
+                    throw new IOException(mConfigFile + ":" + (i + 1) + ": can't edit section header " + trimmed);
+                }
+                currentSection = header.group(1).toLowerCase();
+                if (header.group(2) != null) {
+                    currentSection += "." + header.group(2);
+                }
+                if (currentSection.equals(section)) {
+                    lastSectionEnd = i + 1;
+                }
+                continue;
+            }
+
+            int end = i;
+            while (end + 1 < lines.size() && endsWithContinuation(lines.get(end))) {
+                end++;
+            }
+            if (section.equals(currentSection)) {
+                if (!trimmed.isEmpty() && !trimmed.startsWith("#") && !trimmed.startsWith(";")) {
+                    Matcher keyLine = KEY_LINE.matcher(line);
+                    if (keyLine.matches() && keyLine.group(1).toLowerCase().equals(name)) {
+                        existing.add(new int[]{i, end});
+                        replaceStart = i;
+                        replaceEnd = end;
+                    }
+                    lastSectionEnd = end + 1;
+                }
+            }
+            i = end;
+        }
+
+        if (value == null) {
+            for (int j = existing.size() - 1; j >= 0; j--) {
+                removeLines(lines, existing.get(j)[0], existing.get(j)[1]);
+            }
+            return;
+        }
+
+        String keyLine = "\t" + name + " = " + quote(value) + lineEnd;
+        if (replaceStart >= 0) {
+            removeLines(lines, replaceStart, replaceEnd);
+            lines.add(replaceStart, keyLine);
+        }
+        else if (lastSectionEnd >= 0) {
+            lines.add(lastSectionEnd, keyLine);
+        }
+        else {
+            lines.add(formatSectionHeader(section) + lineEnd);
+            lines.add(keyLine);
+        }
+    }
+
+    private static void removeLines(List<String> lines, int start, int end) {
+        for (int i = end; i >= start; i--) {
+            lines.remove(i);
+        }
+    }
+
+    private static boolean endsWithContinuation(String line) {
+        String stripped = line.endsWith("\r") ? line.substring(0, line.length() - 1) : line;
+        int backslashes = 0;
+        for (int i = stripped.length() - 1; i >= 0 && stripped.charAt(i) == '\\'; i--) {
+            backslashes++;
+        }
+        return backslashes % 2 == 1;
+    }
+
+    private static String formatSectionHeader(String section) {
+        int dot = section.indexOf('.');
+        if (dot < 0) {
+            return "[" + section + "]";
+        }
+        String subsection = section.substring(dot + 1).replace("\\", "\\\\").replace("\"", "\\\"");
+        return "[" + section.substring(0, dot) + " \"" + subsection + "\"]";
+    }
+
+    static String quote(String value) {
+        StringBuilder escaped = new StringBuilder();
+        boolean needsQuotes = !value.isEmpty()
+                && (Character.isWhitespace(value.charAt(0)) || Character.isWhitespace(value.charAt(value.length() - 1)));
+        for (char c : value.toCharArray()) {
+            switch (c) {
+                case '\\':
+                    escaped.append("\\\\");
+                    break;
+                case '"':
+                    escaped.append("\\\"");
+                    break;
+                case '\n':
+                    escaped.append("\\n");
+                    break;
+                case '\t':
+                    escaped.append("\\t");
+                    break;
+                case '#':
+                case ';':
+                    needsQuotes = true;
+                    escaped.append(c);
+                    break;
+                default:
+                    escaped.append(c);
+            }
+        }
+        return needsQuotes ? "\"" + escaped + "\"" : escaped.toString();
+    }
+
+    private static String normalizeKey(String key) {
+        int dot = key.lastIndexOf('.');
+        if (dot <= 0 || dot == key.length() - 1) {
+            throw new IllegalArgumentException("key must be section.name: " + key);
+        }
+        return GitConfigReader.normalizeKey(key);
+    }
+}
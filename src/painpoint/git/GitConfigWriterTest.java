@@ -0,0 +1,116 @@
+package painpoint.git;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class GitConfigWriterTest {
+
+    private File mRoot;
+    private File mConfigFile;
+
+    @Before
+    public void setUp() throws Exception {
+        mRoot = Files.createTempDirectory("gitconfigwriter").toFile();
+        assertTrue(new File(mRoot, ".git").mkdirs());
+        mConfigFile = new File(mRoot, ".git/config");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        new File(mRoot, ".git/config.lock").delete();
+        mConfigFile.delete();
+        new File(mRoot, "gitconfig").delete();
+        new File(mRoot, ".git").delete();
+        mRoot.delete();
+    }
+
+    @Test
+    public void testCommit_replacesAndRemovesInOneWrite() throws Exception {
+
+        // GIVEN a config with a user section between other sections and comments.
+        write("[core]\n\tbare = false\n# who commits\n[User]\n\tname = Old Name\n\temail = old@example.com\n[remote \"origin\"]\n\turl = x\n");
+
+        // WHEN the name is replaced and the email removed.
+        new GitConfigWriter(mConfigFile).set("user.name", "Rob & Phil").unset("user.email").commit();
+
+        // THEN only those lines change, and no lock file is left behind.
+        assertEquals("[core]\n\tbare = false\n# who commits\n[User]\n\tname = Rob & Phil\n[remote \"origin\"]\n\turl = x\n", read());
+        assertFalse(new File(mRoot, ".git/config.lock").exists());
+    }
+
+    @Test
+    public void testCommit_addsMissingSectionAndKey() throws Exception {
+
+        // GIVEN a config without a user section.
+        write("[core]\n\tbare = false\n");
+
+        // WHEN values that need quoting are set.
+        new GitConfigWriter(mConfigFile).set("user.name", " Spaced ; Name").set("user.email", "a@b.c").commit();
+
+        // THEN a section is appended, and the reader gets the same values back.
+        assertEquals("[core]\n\tbare = false\n[user]\n\tname = \" Spaced ; Name\"\n\temail = a@b.c\n", read());
+        GitConfigReader reader = new GitConfigReader(mRoot, null, Collections.<File>emptyList(), mRoot);
+        assertEquals(" Spaced ; Name", reader.getValue("user.name"));
+        assertEquals("a@b.c", reader.getValue("user.email"));
+    }
+
+    @Test
+    public void testCommit_failsWhenLocked() throws Exception {
+
+        // GIVEN a config that another git process has locked.
+        write("[user]\n\tname = Locked\n");
+        assertTrue(new File(mRoot, ".git/config.lock").createNewFile());
+
+        // WHEN a change is committed.
+        try {
+            new GitConfigWriter(mConfigFile).set("user.name", "Changed").commit();
+            fail("expected the lock to be respected");
+        }
+        catch (IOException expected) {
+            // THEN the config is untouched and the other process's lock is kept.
+            assertEquals("[user]\n\tname = Locked\n", read());
+            assertTrue(new File(mRoot, ".git/config.lock").exists());
+        }
+    }
+
+    @Test
+    public void testCommit_keepsSymlinkAndPermissions() throws Exception {
+
+        // GIVEN a config that is a symlink to a file only its owner can read, the way dotfile managers set it up.
+        Assume.assumeTrue(Files.getFileAttributeView(mRoot.toPath(), PosixFileAttributeView.class) != null);
+        Path target = new File(mRoot, "gitconfig").toPath();
+        Files.write(target, "[user]\n\tname = Old\n".getBytes(StandardCharsets.UTF_8));
+        Files.setPosixFilePermissions(target, PosixFilePermissions.fromString("rw-------"));
+        Files.createSymbolicLink(mConfigFile.toPath(), target);
+
+        // WHEN a change is committed.
+        new GitConfigWriter(mConfigFile).set("user.name", "New").commit();
+
+        // THEN the file the link points to is changed and keeps its mode, and the link is still a link.
+        assertTrue(Files.isSymbolicLink(mConfigFile.toPath()));
+        assertEquals("[user]\n\tname = New\n", read());
+        assertEquals(PosixFilePermissions.fromString("rw-------"), Files.getPosixFilePermissions(target));
+        assertFalse(new File(mRoot, "gitconfig.lock").exists());
+    }
+
+    private void write(String content) throws IOException {
+        Files.write(mConfigFile.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String read() throws IOException {
+        return new String(Files.readAllBytes(mConfigFile.toPath()), StandardCharsets.UTF_8);
+    }
+}
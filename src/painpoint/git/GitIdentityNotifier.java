@@ -0,0 +1,13 @@
+package painpoint.git;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.util.messages.Topic;
+
+/**
+ * Published on the project's message bus when the git identity used for votes may have changed.
+ */
+public interface GitIdentityNotifier {
+    Topic<GitIdentityNotifier> IDENTITY_TOPIC = Topic.create("Git identity changed", GitIdentityNotifier.class);
+
+    void identityChanged(Project project);
+}
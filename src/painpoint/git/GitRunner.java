@@ -14,6 +14,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
@@ -26,6 +27,7 @@ public class GitRunner {
     private static final String TAG = GitRunner.class.getSimpleName();
     private String projectBasePath;
     private String gitPathCache;
+    private GitConfigReader configReader;
 
     /**
      * Initialize with the root path for the project.
@@ -34,15 +36,20 @@ public class GitRunner {
      */
     public GitRunner(String projectBasePath) {
         this.projectBasePath = projectBasePath;
+        this.configReader = new GitConfigReader(projectBasePath);
     }
 
     /**
-     * Run `git config user.email` and return the current configured user.
+     * Read user.email from the git config files, or run `git config user.email` if they can't be read.
      *
      * @return returns the current configured user email or null on error.
      */
     @Nullable
     public String getUserEmail() {
+        String value = readConfigValue("user.email");
+        if (value != null) {
+            return value.isEmpty() ? null : value;
+        }
         String output = runGitCommand("config", "user.email");
         if (output != null) {
             return output.trim();
@@ -66,12 +73,68 @@ public class GitRunner {
     }
 
     /**
-     * Run `git config user.name` and return the current configured user.
+     * Set user.name and user.email like {@link #setUserName(String)} and {@link #setUserEmail(String, boolean)} would,
+     * but in-process with one locked write per config file instead of up to three git processes.
+     * Falls back to running git for a config file that can't be written.
+     *
+     * @param fullName  the name for the commits, or null to leave it alone.
+     * @param fullEmail the email for the commits, or null to leave it alone.
+     * @param global    set the email in the global config and clear it from the repository config.
+     */
+    public void setIdentity(@Nullable String fullName, @Nullable String fullEmail, boolean global) {
+        if (fullEmail != null && global) {
+            try {
+                new GitConfigWriter(GitConfigWriter.getGlobalConfigFileForWrite()).set("user.email", fullEmail).commit();
+            } catch (IOException e) {
+                System.out.println(TAG + " couldn't write the global git config, using git: " + e.getMessage());
+                runGitCommand("config", "--global", "user.email", fullEmail);
+            }
+        }
+
+        try {
+            File localConfig = configReader.getLocalConfigFile();
+            if (localConfig == null) {
+                throw new IOException("no repository at " + projectBasePath);
+            }
+            GitConfigWriter localWriter = new GitConfigWriter(localConfig);
+            if (fullName != null) {
+                localWriter.set("user.name", fullName);
+            }
+            if (fullEmail != null) {
+                if (global) {
+                    // clear the local config, so it won't override our new setting
+                    localWriter.unset("user.email");
+                } else {
+                    localWriter.set("user.email", fullEmail);
+                }
+            }
+            localWriter.commit();
+        } catch (IOException e) {
+            System.out.println(TAG + " couldn't write the repository git config, using git: " + e.getMessage());
+            if (fullName != null) {
+                setUserName(fullName);
+            }
+            if (fullEmail != null) {
+                if (global) {
+                    runGitCommand("config", "--unset", "--local", "user.email");
+                } else {
+                    runGitCommand("config", "user.email", fullEmail);
+                }
+            }
+        }
+    }
+
+    /**
+     * Read user.name from the git config files, or run `git config user.name` if they can't be read.
      *
      * @return returns the current configured user email or null on error.
      */
     @Nullable
     public String getUserName() {
+        String value = readConfigValue("user.name");
+        if (value != null) {
+            return value.isEmpty() ? null : value;
+        }
         String output = runGitCommand("config", "user.name");
         if (output != null) {
             return output.trim();
@@ -88,6 +151,23 @@ public class GitRunner {
         runGitCommand("config", "user.name", fullName);
     }
 
+    /**
+     * Read a config value without starting git.
+     *
+     * @param key config key, ex. "user.name".
+     * @return the trimmed value, empty if it isn't set, or null if the config couldn't be read and git should be asked.
+     */
+    @Nullable
+    private String readConfigValue(String key) {
+        try {
+            String value = configReader.getValue(key);
+            return value != null ? value.trim() : "";
+        } catch (IOException e) {
+            System.out.println(TAG + " couldn't read " + key + " from the git config, asking git: " + e.getMessage());
+            return null;
+        }
+    }
+
     /**
      * Calculate git's path.
      *
@@ -0,0 +1,55 @@
+package painpoint.hotspot;
+
+import com.intellij.openapi.vfs.VirtualFile;
+import painpoint.decoration.MarkerCounts;
+import painpoint.domain.painpoint.model.ClassAggregate;
+
+/**
+ * One file of a project scan, with its comment markers and vote totals.
+ */
+public class Hotspot {
+
+    // a thumbs down says as much about a class as this many weighted markers.
+    static final int THUMBS_DOWN_WEIGHT = 5;
+
+    private final VirtualFile mVirtualFile;
+    private final Integer mClassId;
+    private final MarkerCounts mMarkerCounts;
+    private final ClassAggregate mClassAggregate;
+    private final int mScore;
+
+    public Hotspot(VirtualFile virtualFile, Integer classId, MarkerCounts markerCounts, ClassAggregate classAggregate) {
+        mVirtualFile = virtualFile;
+        mClassId = classId;
+        mMarkerCounts = markerCounts;
+        mClassAggregate = classAggregate != null ? classAggregate : ClassAggregate.empty(classId);
+        mScore = mClassAggregate.getThumbsDownCount() * THUMBS_DOWN_WEIGHT + markerCounts.getWeightedTotal();
+    }
+
+    public VirtualFile getVirtualFile() {
+        return mVirtualFile;
+    }
+
+    public Integer getClassId() {
+        return mClassId;
+    }
+
+    public MarkerCounts getMarkerCounts() {
+        return mMarkerCounts;
+    }
+
+    public int getThumbsDownCount() {
+        return mClassAggregate.getThumbsDownCount();
+    }
+
+    public int getVoterCount() {
+        return mClassAggregate.getVoterCount();
+    }
+
+    /**
+     * @return thumbs downs and weighted markers together, higher is more painful.
+     */
+    public int getScore() {
+        return mScore;
+    }
+}
@@ -0,0 +1,64 @@
+package painpoint.hotspot;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The result of a project scan, the files with pain ranked most painful first.
+ */
+public class HotspotReport {
+
+    private static final Comparator<Hotspot> MOST_PAINFUL_FIRST = Comparator.comparingInt(Hotspot::getScore).reversed()
+            .thenComparing(Comparator.comparingInt(Hotspot::getThumbsDownCount).reversed());
+
+    private final List<Hotspot> mHotspots;
+    private final int mScannedFileCount;
+    private final long mElapsedMillis;
+
+    /**
+     * @param hotspots         every scanned file, in any order.
+     * @param scannedFileCount files the scan read.
+     * @param elapsedMillis    how long the scan took.
+     */
+    public HotspotReport(List<Hotspot> hotspots, int scannedFileCount, long elapsedMillis) {
+        List<Hotspot> ranked = new ArrayList<>();
+        for (Hotspot hotspot : hotspots) {
+            // no markers and no votes, nothing to report.
+            if (hotspot.getScore() > 0) {
+                ranked.add(hotspot);
+            }
+        }
+        ranked.sort(MOST_PAINFUL_FIRST);
+        mHotspots = Collections.unmodifiableList(ranked);
+        mScannedFileCount = scannedFileCount;
+        mElapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * @return files with markers or votes, most painful first.
+     */
+    public List<Hotspot> getHotspots() {
+        return mHotspots;
+    }
+
+    public int getScannedFileCount() {
+        return mScannedFileCount;
+    }
+
+    public long getElapsedMillis() {
+        return mElapsedMillis;
+    }
+
+    public int getFilesPerSecond() {
+        return (int) (mScannedFileCount * 1000L / Math.max(1, mElapsedMillis));
+    }
+
+    /**
+     * @return ex. "30000 files in 2.5s, 12000 files/s".
+     */
+    public String getThroughput() {
+        return String.format("%d files in %.1fs, %d files/s", mScannedFileCount, mElapsedMillis / 1000.0, getFilesPerSecond());
+    }
+}
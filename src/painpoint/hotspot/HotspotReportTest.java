@@ -0,0 +1,47 @@
+package painpoint.hotspot;
+
+import org.junit.Test;
+import painpoint.decoration.MarkerScanner;
+import painpoint.domain.painpoint.model.ClassAggregate;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class HotspotReportTest {
+
+    @Test
+    public void testHotspots_rankedMostPainfulFirst() throws Exception {
+
+        // GIVEN files with votes, with markers, with both and with neither.
+        MarkerScanner scanner = MarkerScanner.fromSpec("TODO:1,FIXME:2");
+        Hotspot quiet = new Hotspot(null, 1, scanner.count(""), null);
+        Hotspot todos = new Hotspot(null, 2, scanner.count("// TODO\n// TODO\n// FIXME"), null);
+        Hotspot voted = new Hotspot(null, 3, scanner.count(""), new ClassAggregate(3, 2, 2, 0));
+        Hotspot both = new Hotspot(null, 4, scanner.count("// FIXME"), new ClassAggregate(4, 2, 3, 0));
+
+        // WHEN they are reported.
+        HotspotReport report = new HotspotReport(Arrays.asList(quiet, todos, voted, both), 4, 100);
+
+        // THEN a thumbs down outweighs a few markers, and files with no pain are left out.
+        List<Hotspot> hotspots = report.getHotspots();
+        assertEquals(Arrays.asList(both, voted, todos), hotspots);
+        assertEquals(2 * Hotspot.THUMBS_DOWN_WEIGHT + 2, both.getScore());
+        assertEquals(4, todos.getScore());
+    }
+
+    @Test
+    public void testThroughput() throws Exception {
+
+        // GIVEN a scan of 30000 files that took 2.5 seconds.
+        HotspotReport report = new HotspotReport(Arrays.asList(new Hotspot(null, 1, MarkerScanner.fromSpec("TODO").count("// TODO"), null)), 30000, 2500);
+
+        // WHEN its throughput is read.
+        int filesPerSecond = report.getFilesPerSecond();
+
+        // THEN it is files per second.
+        assertEquals(12000, filesPerSecond);
+        assertEquals(30000, report.getScannedFileCount());
+    }
+}
@@ -0,0 +1,191 @@
+package painpoint.hotspot;
+
+import com.intellij.ide.plugins.PluginManager;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleManager;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ModuleRootManager;
+import com.intellij.openapi.roots.ProjectFileIndex;
+import com.intellij.openapi.roots.ProjectRootManager;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+import painpoint.component.PainPointStoreComponent;
+import painpoint.component.ProjectViewManager;
+import painpoint.decoration.ClassIdCache;
+import painpoint.decoration.CommentScanner;
+import painpoint.decoration.MarkerCounts;
+import painpoint.dialog.HotspotDialog;
+import painpoint.dialog.PainPointPresentationFactory;
+import painpoint.domain.painpoint.model.ClassAggregate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Scans the source roots of every module for pain points and shows them ranked.
+ * Each source directory is a fork/join task, its files are read in one short read action
+ * and its subdirectories are forked, so big and small modules spread evenly over the pool.
+ * Marker counts come from the marker index, the vote totals of every class are fetched together at the end.
+ */
+public class HotspotScan extends Task.Backgroundable {
+
+    private final Project mProject;
+    private final AtomicInteger mScannedFileCount = new AtomicInteger();
+    private HotspotReport mReport;
+
+    public HotspotScan(@NotNull Project project) {
+        super(project, "Scanning project for pain points", true);
+        mProject = project;
+    }
+
+    @Override
+    public void run(@NotNull ProgressIndicator indicator) {
+        long startMillis = System.currentTimeMillis();
+        indicator.setIndeterminate(true);
+        indicator.setText("Scanning project for pain points");
+
+        List<VirtualFile> sourceRoots = findSourceRoots();
+        List<ScannedFile> scannedFiles = new ArrayList<>();
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+        try {
+            List<DirectoryScan> rootScans = new ArrayList<>();
+            for (VirtualFile sourceRoot : sourceRoots) {
+                DirectoryScan rootScan = new DirectoryScan(sourceRoot, indicator);
+                pool.execute(rootScan);
+                rootScans.add(rootScan);
+            }
+            for (DirectoryScan rootScan : rootScans) {
+                scannedFiles.addAll(rootScan.join());
+            }
+        }
+        finally {
+            pool.shutdownNow();
+        }
+        if (indicator.isCanceled()) {
+            return;
+        }
+
+        indicator.setText("Loading votes");
+        List<Integer> classIds = new ArrayList<>();
+        for (ScannedFile scannedFile : scannedFiles) {
+            classIds.add(scannedFile.mClassId);
+        }
+        ProjectViewManager projectViewManager = ProjectViewManager.getInstance(mProject);
+        Map<Integer, ClassAggregate> classAggregates = PainPointStoreComponent.getInstance()
+                .runBackgroundLookup(() -> projectViewManager.getAggregatesForClassIds(classIds));
+        List<Hotspot> hotspots = new ArrayList<>();
+        for (ScannedFile scannedFile : scannedFiles) {
+            hotspots.add(new Hotspot(scannedFile.mVirtualFile, scannedFile.mClassId, scannedFile.mMarkerCounts,
+                    classAggregates.get(scannedFile.mClassId)));
+        }
+
+        mReport = new HotspotReport(hotspots, mScannedFileCount.get(), System.currentTimeMillis() - startMillis);
+        PluginManager.getLogger().info("HotspotScan of " + sourceRoots.size() + " source roots: " + mReport.getThroughput());
+    }
+
+    @Override
+    public void onSuccess() {
+        if (mReport != null && !mProject.isDisposed()) {
+            new HotspotDialog(mProject, mReport);
+        }
+    }
+
+    // the source roots of all modules, roots nested in another root left out so no file is scanned twice.
+    private List<VirtualFile> findSourceRoots() {
+        return ApplicationManager.getApplication().runReadAction((Computable<List<VirtualFile>>) () -> {
+            List<VirtualFile> allRoots = new ArrayList<>();
+            for (Module module : ModuleManager.getInstance(mProject).getModules()) {
+                Collections.addAll(allRoots, ModuleRootManager.getInstance(module).getSourceRoots());
+            }
+            List<VirtualFile> sourceRoots = new ArrayList<>();
+            for (VirtualFile root : allRoots) {
+                boolean nested = false;
+                for (VirtualFile other : allRoots) {
+                    if (!other.equals(root) && VfsUtilCore.isAncestor(other, root, true)) {
+                        nested = true;
+                        break;
+                    }
+                }
+                if (!nested && !sourceRoots.contains(root)) {
+                    sourceRoots.add(root);
+                }
+            }
+            return sourceRoots;
+        });
+    }
+
+    // the files of one directory, and the directories below it as forked tasks.
+    private class DirectoryScan extends RecursiveTask<List<ScannedFile>> {
+
+        private final VirtualFile mDirectory;
+        private final ProgressIndicator mIndicator;
+
+        DirectoryScan(VirtualFile directory, ProgressIndicator indicator) {
+            mDirectory = directory;
+            mIndicator = indicator;
+        }
+
+        @Override
+        protected List<ScannedFile> compute() {
+            if (mIndicator.isCanceled()) {
+                return Collections.emptyList();
+            }
+            List<VirtualFile> subdirectories = new ArrayList<>();
+            List<ScannedFile> scannedFiles = new ArrayList<>();
+            ApplicationManager.getApplication().runReadAction(() -> {
+                if (mProject.isDisposed() || !mDirectory.isValid()) {
+                    return;
+                }
+                ProjectFileIndex fileIndex = ProjectRootManager.getInstance(mProject).getFileIndex();
+                ClassIdCache classIdCache = ProjectViewManager.getInstance(mProject).getClassIdCache();
+                for (VirtualFile child : mDirectory.getChildren()) {
+                    // excluded folders, ex. build output below a source root.
+                    if (!fileIndex.isInSourceContent(child)) {
+                        continue;
+                    }
+                    if (child.isDirectory()) {
+                        subdirectories.add(child);
+                    }
+                    else if (CommentScanner.canScan(child)) {
+                        Integer classId = classIdCache.getClassId(child);
+                        if (classId != null) {
+                            scannedFiles.add(new ScannedFile(child, classId, PainPointPresentationFactory.getMarkerCounts(mProject, child)));
+                        }
+                    }
+                }
+            });
+            mIndicator.setText2(mScannedFileCount.addAndGet(scannedFiles.size()) + " files scanned");
+
+            List<DirectoryScan> subdirectoryScans = new ArrayList<>();
+            for (VirtualFile subdirectory : subdirectories) {
+                subdirectoryScans.add((DirectoryScan) new DirectoryScan(subdirectory, mIndicator).fork());
+            }
+            for (DirectoryScan subdirectoryScan : subdirectoryScans) {
+                scannedFiles.addAll(subdirectoryScan.join());
+            }
+            return scannedFiles;
+        }
+    }
+
+    private static class ScannedFile {
+        private final VirtualFile mVirtualFile;
+        private final Integer mClassId;
+        private final MarkerCounts mMarkerCounts;
+
+        ScannedFile(VirtualFile virtualFile, Integer classId, MarkerCounts markerCounts) {
+            mVirtualFile = virtualFile;
+            mClassId = classId;
+            mMarkerCounts = markerCounts;
+        }
+    }
+}
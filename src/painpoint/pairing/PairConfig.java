@@ -10,16 +10,18 @@ import painpoint.yaml.Node;
 import painpoint.yaml.Yaml;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
  * The team members that can pair.
+ * Immutable once constructed, so one instance can be shared by every reader of .pairs.
  */
 public class PairConfig {
 
     private String prefix;
     private String domain;
-    private List<TeamMember> teamMembers = new ArrayList<TeamMember>();
+    private List<TeamMember> teamMembers = Collections.emptyList();
     private boolean shouldChangeGlobalUser;
 
     /**
@@ -101,12 +103,14 @@ public class PairConfig {
             }
             Node pairs = root.get("pairs");
             if (pairs != null) {
+                List<TeamMember> members = new ArrayList<TeamMember>();
                 for (Node pairNode : pairs.getChildren()) {
                     TeamMember teamMember = teamMemberFromYamlPairChildNode(pairNode);
                     if (teamMember != null) {
-                        teamMembers.add(teamMember);
+                        members.add(teamMember);
                     }
                 }
+                teamMembers = Collections.unmodifiableList(members);
             }
             Node global = root.get("global");
             if (global != null && global.getValue() != null) {
@@ -138,7 +142,7 @@ public class PairConfig {
     /**
      * Get all the team members from the configuration.
      *
-     * @return list of team members that can check in.
+     * @return unmodifiable list of team members that can check in.
      */
     public List<TeamMember> getTeamMembers() {
         return teamMembers;
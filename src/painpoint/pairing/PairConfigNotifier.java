@@ -0,0 +1,13 @@
+package painpoint.pairing;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.util.messages.Topic;
+
+/**
+ * Published on the project's message bus after .pairs was reloaded.
+ */
+public interface PairConfigNotifier {
+    Topic<PairConfigNotifier> PAIR_CONFIG_TOPIC = Topic.create("Pair config changed", PairConfigNotifier.class);
+
+    void pairConfigChanged(Project project, PairConfig pairConfig);
+}
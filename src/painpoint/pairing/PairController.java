@@ -18,9 +18,18 @@ import java.util.List;
  */
 public class PairController {
 
+    /**
+     * Told after a team member is toggled and git has the new pair, so cached identities can be dropped right away
+     * instead of waiting for the config file change to be noticed.
+     */
+    public interface PairChangeListener {
+        void pairChanged();
+    }
+
     PairConfig pairConfig;
     GitRunner gitRunner;
     ArrayList<TeamMember> currentPair;
+    PairChangeListener pairChangeListener;
 
     /**
      * Logic for pairing.
@@ -68,16 +77,24 @@ public class PairController {
         String email = generatePairEmail(currentPair);
         String name = generatePairName(currentPair);
 
-        if (name != null) {
-            gitRunner.setUserName(name);
-        }
-        if (email != null) {
-            gitRunner.setUserEmail(email, pairConfig.shouldChangeGlobalUser());
+        gitRunner.setIdentity(name, email, pairConfig.shouldChangeGlobalUser());
+
+        if (pairChangeListener != null) {
+            pairChangeListener.pairChanged();
         }
 
         return paired;
     }
 
+    /**
+     * Listen for pair changes made through {@link #toggleTeamMember(TeamMember)}.
+     *
+     * @param pairChangeListener listener, or null to stop listening.
+     */
+    public void setPairChangeListener(@Nullable PairChangeListener pairChangeListener) {
+        this.pairChangeListener = pairChangeListener;
+    }
+
     /**
      * Generate and return the display name for the pair.
      *
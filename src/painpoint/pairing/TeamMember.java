@@ -4,13 +4,13 @@
 package painpoint.pairing;
 
 /**
- * An individual team member that can pair.
+ * An individual team member that can pair.  Immutable.
  */
 public class TeamMember {
 
-    private String initials;
-    private String name;
-    private String email;
+    private final String initials;
+    private final String name;
+    private final String email;
 
     /**
      * Represents a programmer contributor that can checkin to git.
@@ -30,23 +30,11 @@ public class TeamMember {
         return initials;
     }
 
-    public void setInitials(String initials) {
-        this.initials = initials;
-    }
-
     public String getName() {
         return name;
     }
 
-    public void setName(String name) {
-        this.name = name;
-    }
-
     public String getEmail() {
         return email;
     }
-
-    public void setEmail(String email) {
-        this.email = email;
-    }
 }